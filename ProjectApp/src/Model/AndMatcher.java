@@ -0,0 +1,59 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches tasks that are matched by all of its parts.
+ * <p>
+ * When searched through a project index, the part with the fewest estimated
+ * matches is looked up in the index and only its results are tested against
+ * the other parts, see {@link QueryPlanner}. When every part has a bitmap, the
+ * bitmaps are intersected instead.
+ * </p>
+ */
+public class AndMatcher implements ITaskMatcher {
+    private final ITaskMatcher[] parts;
+
+    public AndMatcher(ITaskMatcher... parts) {
+        // flatten nested ANDs, so that the planner sees all parts at once
+        List<ITaskMatcher> flat = new ArrayList<>();
+        for (ITaskMatcher part : parts) {
+            if (part instanceof AndMatcher) {
+                flat.addAll(Arrays.asList(((AndMatcher) part).parts));
+            } else {
+                flat.add(part);
+            }
+        }
+        this.parts = flat.toArray(new ITaskMatcher[0]);
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return QueryPlanner.matchesAll(task, parts, 0);
+    }
+
+    @Override
+    public ArrayList<Task> lookup(TaskIndex index) {
+        TaskBitmap bitmap = bitmap(index);
+        return bitmap != null ? index.tasks(bitmap) : QueryPlanner.and(parts, index);
+    }
+
+    @Override
+    public TaskBitmap bitmap(TaskIndex index) {
+        return QueryPlanner.and(QueryPlanner.bitmaps(parts, index));
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        int best = -1;
+        for (ITaskMatcher part : parts) {
+            int estimate = part.estimate(index);
+            if (estimate >= 0 && (best < 0 || estimate < best)) {
+                best = estimate;
+            }
+        }
+        return best;
+    }
+}
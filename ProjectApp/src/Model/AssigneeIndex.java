@@ -0,0 +1,140 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index from assignee to the tasks taken by that person, across all projects of a {@link ProjectsManager}.
+ * <p>
+ * Like {@link TaskIndex}, it is kept up to date by the projects: a task is
+ * taken out just before one of its fields changes and put back right after.
+ * For every assignee the index also counts the tasks per {@link TaskState},
+ * so the workload of a person is known without looking at the tasks.
+ * </p>
+ * <p>
+ * The index can be used by several threads. Every assignee has its own entry,
+ * guarded by its own monitor, so threads updating or reading the tasks of
+ * different people do not wait for each other.
+ * </p>
+ */
+class AssigneeIndex {
+
+    private static final TaskState[] STATES = TaskState.values();
+
+    /**
+     * The tasks of one assignee and their number per state;
+     * the last slot counts the tasks without a state.
+     */
+    private static class Entry {
+        final Set<Task> tasks = new LinkedHashSet<>();
+        final int[] byState = new int[STATES.length + 1];
+    }
+
+    private final ConcurrentMap<String, Entry> byTakenBy;
+
+    AssigneeIndex() {
+        this.byTakenBy = new ConcurrentHashMap<>();
+    }
+
+    void add(Task task) {
+        String takenBy = task.getTakenBy();
+        if (takenBy == null) {
+            return;
+        }
+        byTakenBy.compute(takenBy, (name, entry) -> {
+            if (entry == null) {
+                entry = new Entry();
+            }
+            synchronized (entry) {
+                if (entry.tasks.add(task)) {
+                    entry.byState[slot(task.getState())]++;
+                }
+            }
+            return entry;
+        });
+    }
+
+    void remove(Task task) {
+        String takenBy = task.getTakenBy();
+        if (takenBy == null) {
+            return;
+        }
+        byTakenBy.computeIfPresent(takenBy, (name, entry) -> {
+            synchronized (entry) {
+                if (entry.tasks.remove(task)) {
+                    entry.byState[slot(task.getState())]--;
+                }
+                return entry.tasks.isEmpty() ? null : entry;
+            }
+        });
+    }
+
+    void clear() {
+        byTakenBy.clear();
+    }
+
+    private static int slot(TaskState state) {
+        return state == null ? STATES.length : state.ordinal();
+    }
+
+    /**
+     * @param takenBy the assignee to look for
+     * @return the tasks taken by the given person, in the order they were indexed
+     */
+    ArrayList<Task> takenBy(String takenBy) {
+        Entry entry = byTakenBy.get(takenBy);
+        if (entry == null) {
+            return new ArrayList<>();
+        }
+        synchronized (entry) {
+            return new ArrayList<>(entry.tasks);
+        }
+    }
+
+    /**
+     * @param takenBy the assignee to count
+     * @return the number of tasks taken by the given person
+     */
+    int count(String takenBy) {
+        Entry entry = byTakenBy.get(takenBy);
+        if (entry == null) {
+            return 0;
+        }
+        synchronized (entry) {
+            return entry.tasks.size();
+        }
+    }
+
+    /**
+     * @param takenBy the assignee to count
+     * @return the number of tasks taken by the given person in each state
+     */
+    Map<TaskState, Integer> countByState(String takenBy) {
+        Map<TaskState, Integer> counts = new EnumMap<>(TaskState.class);
+        Entry entry = byTakenBy.get(takenBy);
+        for (TaskState state : STATES) {
+            counts.put(state, 0);
+        }
+        if (entry != null) {
+            synchronized (entry) {
+                for (TaskState state : STATES) {
+                    counts.put(state, entry.byState[state.ordinal()]);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the names of everyone who has taken at least one task, sorted
+     */
+    Set<String> assignees() {
+        return new TreeSet<>(byTakenBy.keySet());
+    }
+}
@@ -0,0 +1,53 @@
+package Model;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that reads the system time only once per tick and returns the cached value in between.
+ * <p>
+ * Reading it is a single volatile read, which makes it suitable for bulk
+ * updates where many tasks are stamped within the same few milliseconds.
+ * Timestamps are at most one tick behind the system clock. A daemon thread
+ * refreshes the value until the clock is closed.
+ * </p>
+ */
+public class CoarseClock implements IClock, Closeable {
+
+    private final ScheduledExecutorService ticker;
+    private volatile long now;
+
+    /**
+     * Creates a clock and starts refreshing it.
+     *
+     * @param tickMillis the time between two readings of the system clock
+     */
+    public CoarseClock(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.now = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "coarse-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> now = System.currentTimeMillis(), tickMillis, tickMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    /**
+     * Stops refreshing; the clock keeps returning the last value read.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
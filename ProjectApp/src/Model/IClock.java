@@ -0,0 +1,43 @@
+package Model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Source of the current time for task timestamps, as milliseconds since the epoch.
+ * <p>
+ * Timestamps are kept as primitive {@code long} values so that updating a task
+ * allocates nothing; {@link #toDateTime} turns one into a {@link LocalDateTime}
+ * in the system time zone when it is displayed. {@link #SYSTEM} reads the system
+ * clock, {@link CoarseClock} caches it for bulk updates and {@link ManualClock}
+ * only moves when told to, for tests.
+ * </p>
+ */
+@FunctionalInterface
+public interface IClock {
+
+    /** The system clock. */
+    IClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return the current time in milliseconds since 1970-01-01T00:00Z
+     */
+    long millis();
+
+    /**
+     * @param millis milliseconds since the epoch
+     * @return the same instant as local date and time in the system time zone
+     */
+    static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * @param dateTime a local date and time in the system time zone
+     * @return the same instant in milliseconds since the epoch
+     */
+    static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
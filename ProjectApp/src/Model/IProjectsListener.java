@@ -0,0 +1,63 @@
+package Model;
+
+/**
+ * Receives notifications about changes made to the projects and tasks
+ * held by a {@link ProjectsManager}.
+ * <p>
+ * Listeners are called synchronously, after the change has been applied.
+ * All methods have empty default implementations so that a listener only
+ * needs to override the events it cares about.
+ * </p>
+ */
+public interface IProjectsListener {
+
+    /**
+     * Called after a project has been added to the manager.
+     *
+     * @param project the added project
+     */
+    default void projectAdded(Project project) {}
+
+    /**
+     * Called after a project has been removed from the manager.
+     *
+     * @param project the removed project
+     */
+    default void projectRemoved(Project project) {}
+
+    /**
+     * Called after a task has been added to a project.
+     *
+     * @param project the project the task was added to
+     * @param task    the added task
+     */
+    default void taskAdded(Project project, Task task) {}
+
+    /**
+     * Called after a task has been removed from a project.
+     *
+     * @param project the project the task was removed from
+     * @param task    the removed task
+     */
+    default void taskRemoved(Project project, Task task) {}
+
+    /**
+     * Called after the description, priority, state or assignee of a task has changed.
+     *
+     * @param project the project the task belongs to
+     * @param task    the updated task
+     */
+    default void taskUpdated(Project project, Task task) {}
+
+    /**
+     * Called before the changes of a {@link TaskBatch} are reported. The task
+     * events up to {@link #batchFinished()} belong to batches that were applied
+     * together, and each affected task is reported once with its final values.
+     */
+    default void batchStarted() {}
+
+    /**
+     * Called after all changes of a batch have been reported.
+     */
+    default void batchFinished() {}
+}
@@ -0,0 +1,28 @@
+package Model;
+
+/**
+ * Loads the tasks of a {@link Project} on demand.
+ * <p>
+ * A project restored with a loader keeps only its own fields in memory; the
+ * loader is called once, on the first access to the tasks, and is expected to
+ * add them with {@link Project#restoreTask}.
+ * </p>
+ */
+public interface ITaskLoader {
+
+    /**
+     * Adds all persisted tasks to the given project.
+     *
+     * @param project the project whose tasks should be loaded
+     * @throws java.io.UncheckedIOException if the tasks could not be read
+     */
+    void loadTasks(Project project);
+
+    /**
+     * @return the number of tasks {@link #loadTasks} will add, or {@code -1} if
+     *         it is not known without loading them
+     */
+    default int taskCount() {
+        return -1;
+    }
+}
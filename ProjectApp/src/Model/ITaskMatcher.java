@@ -1,4 +1,76 @@
 package Model;
+
+import java.util.ArrayList;
+
 public interface ITaskMatcher {
     boolean match(Task task);
+
+    /**
+     * Answers the query from the secondary indexes of a project, if possible.
+     * <p>
+     * Matchers that can be answered from a {@link TaskIndex} override this and
+     * return the matching tasks in ID order; the default returns {@code null},
+     * which makes {@link Project#findTasks} test every task with {@link #match}.
+     * </p>
+     *
+     * @param index the indexes of the project being searched
+     * @return the matching tasks, or {@code null} if the index cannot answer the query
+     */
+    default ArrayList<Task> lookup(TaskIndex index) {
+        return null;
+    }
+
+    /**
+     * Estimates how many tasks {@link #lookup} would return, from the cardinality
+     * statistics of the index. Used by {@link AndMatcher} and {@link OrMatcher} to
+     * plan a query: the most selective indexed matcher drives the lookup and the
+     * others are tested in order of selectivity.
+     *
+     * @param index the indexes of the project being searched
+     * @return the estimated number of matches, or -1 if {@link #lookup} returns {@code null}
+     */
+    default int estimate(TaskIndex index) {
+        return -1;
+    }
+
+    /**
+     * Answers the query from the secondary indexes of a project as a bitmap of task IDs.
+     * <p>
+     * Bitmaps of different matchers are combined with word-level operations by
+     * {@link AndMatcher}, {@link OrMatcher} and {@link NotMatcher}, and can be
+     * counted or iterated without building a list of tasks, see
+     * {@link Project#countTasks} and {@link Project#forEachTask}. The default
+     * returns {@code null}, which makes the project test every task with {@link #match}.
+     * </p>
+     *
+     * @param index the indexes of the project being searched
+     * @return the IDs of the matching tasks, which the caller must not modify,
+     *         or {@code null} if the index cannot answer the query
+     */
+    default TaskBitmap bitmap(TaskIndex index) {
+        return null;
+    }
+
+    /**
+     * @param other another matcher
+     * @return a matcher for tasks matched by both this and {@code other}
+     */
+    default ITaskMatcher and(ITaskMatcher other) {
+        return new AndMatcher(this, other);
+    }
+
+    /**
+     * @param other another matcher
+     * @return a matcher for tasks matched by this or {@code other}
+     */
+    default ITaskMatcher or(ITaskMatcher other) {
+        return new OrMatcher(this, other);
+    }
+
+    /**
+     * @return a matcher for tasks not matched by this
+     */
+    default ITaskMatcher negate() {
+        return new NotMatcher(this);
+    }
 }
@@ -0,0 +1,37 @@
+package Model;
+
+/**
+ * A clock that only changes when it is set or advanced, for deterministic tests.
+ */
+public class ManualClock implements IClock {
+
+    private long now;
+
+    /**
+     * @param startMillis the initial time in milliseconds since the epoch
+     */
+    public ManualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public synchronized long millis() {
+        return now;
+    }
+
+    /**
+     * @param millis the new time in milliseconds since the epoch
+     */
+    public synchronized void set(long millis) {
+        now = millis;
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param millis the number of milliseconds to advance
+     */
+    public synchronized void advance(long millis) {
+        now += millis;
+    }
+}
@@ -2,10 +2,27 @@ package Model;
 
 import Model.ITaskMatcher;
 
+import java.util.ArrayList;
+
 public class NotDoneMatcher implements ITaskMatcher {
 
     @Override
     public boolean match(Task task) {
         return task.getState() != TaskState.DONE;
     }
+
+    @Override
+    public ArrayList<Task> lookup(TaskIndex index) {
+        return index.notInState(TaskState.DONE);
+    }
+
+    @Override
+    public TaskBitmap bitmap(TaskIndex index) {
+        return index.all().andNot(index.stateBitmap(TaskState.DONE));
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        return index.size() - index.countState(TaskState.DONE);
+    }
 }
@@ -0,0 +1,42 @@
+package Model;
+
+import java.util.ArrayList;
+
+/**
+ * Matches tasks that are not matched by another matcher.
+ * <p>
+ * If the negated matcher has a bitmap, the negation is the set of all indexed
+ * tasks minus that bitmap. Otherwise it cannot be looked up in an index, so on
+ * its own it is answered by testing every task; inside an {@link AndMatcher} it
+ * is only tested against the candidates of the indexed parts.
+ * </p>
+ */
+public class NotMatcher implements ITaskMatcher {
+    private final ITaskMatcher matcher;
+
+    public NotMatcher(ITaskMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return !matcher.match(task);
+    }
+
+    @Override
+    public ArrayList<Task> lookup(TaskIndex index) {
+        TaskBitmap bitmap = bitmap(index);
+        return bitmap == null ? null : index.tasks(bitmap);
+    }
+
+    @Override
+    public TaskBitmap bitmap(TaskIndex index) {
+        TaskBitmap negated = matcher.bitmap(index);
+        return negated == null ? null : index.all().andNot(negated);
+    }
+
+    @Override
+    public ITaskMatcher negate() {
+        return matcher;
+    }
+}
@@ -0,0 +1,63 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches tasks that are matched by at least one of its parts.
+ * <p>
+ * When every part can be looked up in a project index, the result is the
+ * union of those lookups, taken as the union of their bitmaps when they have one; otherwise every task is tested, see {@link QueryPlanner}.
+ * </p>
+ */
+public class OrMatcher implements ITaskMatcher {
+    private final ITaskMatcher[] parts;
+
+    public OrMatcher(ITaskMatcher... parts) {
+        // flatten nested ORs, so that the planner sees all parts at once
+        List<ITaskMatcher> flat = new ArrayList<>();
+        for (ITaskMatcher part : parts) {
+            if (part instanceof OrMatcher) {
+                flat.addAll(Arrays.asList(((OrMatcher) part).parts));
+            } else {
+                flat.add(part);
+            }
+        }
+        this.parts = flat.toArray(new ITaskMatcher[0]);
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for (ITaskMatcher part : parts) {
+            if (part.match(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ArrayList<Task> lookup(TaskIndex index) {
+        TaskBitmap bitmap = bitmap(index);
+        return bitmap != null ? index.tasks(bitmap) : QueryPlanner.or(parts, index);
+    }
+
+    @Override
+    public TaskBitmap bitmap(TaskIndex index) {
+        return QueryPlanner.or(QueryPlanner.bitmaps(parts, index));
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        long sum = 0;
+        for (ITaskMatcher part : parts) {
+            int estimate = part.estimate(index);
+            if (estimate < 0) {
+                return -1;
+            }
+            sum += estimate;
+        }
+        return (int) Math.min(sum, index.size());
+    }
+}
@@ -0,0 +1,236 @@
+package Model;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a task matcher over many projects on the common {@link ForkJoinPool}.
+ * <p>
+ * The projects are split into ranges of about {@link #SEQUENTIAL_THRESHOLD}
+ * tasks, which are matched in parallel; a workspace with fewer tasks is matched
+ * on the calling thread. A project with more tasks than the threshold is answered
+ * from its indexes when the matcher allows it, and otherwise its tasks are
+ * matched in chunks of {@link #CHUNK_SIZE} in parallel.
+ * </p>
+ * <p>
+ * Every project and chunk writes its result to its own slot, planned before the
+ * query starts, so the results are merged once, in project and task ID order,
+ * without intermediate lists. Chunks read the tasks without the lock of their
+ * project, like the getters of {@link Task}, so a task modified during the query
+ * may be matched with values from before or after the change.
+ * </p>
+ */
+final class ParallelQuery extends RecursiveAction {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Workspaces, ranges of projects and projects with fewer tasks than this are matched sequentially. */
+    static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    /** The number of tasks matched together when a large project is split. */
+    static final int CHUNK_SIZE = 4096;
+
+    // a running query is never serialized
+    private final transient Plan plan;
+    private final int from;
+    private final int to;
+
+    private ParallelQuery(Plan plan, int from, int to) {
+        this.plan = plan;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Finds the tasks of all projects that match a condition.
+     *
+     * @return a new list of the matching tasks, ordered by project and then as {@link Project#findTasks}
+     */
+    static List<Task> find(List<Project> projects, ITaskMatcher matcher) {
+        Plan plan = new Plan(projects, matcher, false);
+        plan.run();
+        int total = 0;
+        for (List<Task> part : plan.found) {
+            if (part != null) {
+                total += part.size();
+            }
+        }
+        List<Task> result = new ArrayList<>(total);
+        for (List<Task> part : plan.found) {
+            if (part != null) {
+                result.addAll(part);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the tasks of all projects that match a condition.
+     *
+     * @return the number of matching tasks
+     */
+    static int count(List<Project> projects, ITaskMatcher matcher) {
+        Plan plan = new Plan(projects, matcher, true);
+        plan.run();
+        int total = 0;
+        for (int count : plan.counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > 1 && plan.offsets[to] - plan.offsets[from] > SEQUENTIAL_THRESHOLD) {
+            int mid = plan.split(from, to);
+            invokeAll(new ParallelQuery(plan, from, mid), new ParallelQuery(plan, mid, to));
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            plan.match(i);
+        }
+    }
+
+    /**
+     * The projects of one query with their task counts, and a result slot for
+     * every project, or for every chunk of a project that is split.
+     * <p>
+     * The counts of projects whose tasks are not loaded yet come from their
+     * loaders, so planning decodes nothing; every project is loaded by the
+     * thread that matches it.
+     * </p>
+     */
+    private static final class Plan {
+        final List<Project> projects;
+        final ITaskMatcher matcher;
+        final boolean counting;
+        // offsets[i] is the number of tasks in the projects before project i
+        final long[] offsets;
+        // slots[i] is the first result slot of project i
+        final int[] slots;
+        final List<List<Task>> found;
+        final int[] counts;
+
+        Plan(List<Project> projects, ITaskMatcher matcher, boolean counting) {
+            this.projects = projects;
+            this.matcher = matcher;
+            this.counting = counting;
+            int n = projects.size();
+            offsets = new long[n + 1];
+            slots = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                int size = projects.get(i).taskCount();
+                offsets[i + 1] = offsets[i] + size;
+                slots[i + 1] = slots[i] + chunks(size);
+            }
+            found = counting ? null : new ArrayList<>(Collections.nCopies(slots[n], null));
+            counts = counting ? new int[slots[n]] : null;
+        }
+
+        void run() {
+            ParallelQuery query = new ParallelQuery(this, 0, projects.size());
+            if (offsets[projects.size()] <= SEQUENTIAL_THRESHOLD) {
+                query.compute();
+            } else {
+                ForkJoinPool.commonPool().invoke(query);
+            }
+        }
+
+        private static int chunks(int size) {
+            return size <= SEQUENTIAL_THRESHOLD ? 1 : (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        }
+
+        /**
+         * @return the project that divides the range into two with about as many tasks each
+         */
+        int split(int from, int to) {
+            long half = offsets[from] + (offsets[to] - offsets[from]) / 2;
+            int low = from + 1;
+            int high = to - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (offsets[mid] < half) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Matches the tasks of one project, in chunks if it is split and the indexes cannot answer.
+         */
+        void match(int i) {
+            Project project = projects.get(i);
+            int slot = slots[i];
+            int chunkCount = slots[i + 1] - slot;
+            if (chunkCount == 1) {
+                if (counting) {
+                    counts[slot] = project.countTasks(matcher);
+                } else {
+                    found.set(slot, project.findTasks(matcher));
+                }
+                return;
+            }
+            if (counting) {
+                int indexed = project.countIndexed(matcher);
+                if (indexed >= 0) {
+                    counts[slot] = indexed;
+                    return;
+                }
+            } else {
+                List<Task> indexed = project.lookup(matcher);
+                if (indexed != null) {
+                    found.set(slot, indexed);
+                    return;
+                }
+            }
+            // the project may have gained or lost tasks since the plan was made, so
+            // the last chunk takes the rest of the list
+            List<Task> projectTasks = project.getTasks();
+            List<RecursiveAction> chunks = new ArrayList<>(chunkCount);
+            for (int c = 0; c < chunkCount; c++) {
+                int chunkSlot = slot + c;
+                int start = Math.min(c * CHUNK_SIZE, projectTasks.size());
+                int end = c == chunkCount - 1
+                        ? projectTasks.size()
+                        : Math.min(start + CHUNK_SIZE, projectTasks.size());
+                chunks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        matchChunk(projectTasks, start, end, chunkSlot);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(chunks);
+        }
+
+        private void matchChunk(List<Task> projectTasks, int start, int end, int slot) {
+            if (counting) {
+                int count = 0;
+                for (int i = start; i < end; i++) {
+                    if (matcher.match(projectTasks.get(i))) {
+                        count++;
+                    }
+                }
+                counts[slot] = count;
+            } else {
+                List<Task> matches = new ArrayList<>();
+                for (int i = start; i < end; i++) {
+                    Task task = projectTasks.get(i);
+                    if (matcher.match(task)) {
+                        matches.add(task);
+                    }
+                }
+                found.set(slot, matches);
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package Model;
 import Model.ITaskMatcher;
 
+import java.util.ArrayList;
+
 public class PrioMatcher implements ITaskMatcher {
     private TaskPrio prio;
 
@@ -12,4 +14,19 @@ public class PrioMatcher implements ITaskMatcher {
     public boolean match(Task task) {
         return task.getPrio().equals(prio);
     }
+
+    @Override
+    public ArrayList<Task> lookup(TaskIndex index) {
+        return index.withPrio(prio);
+    }
+
+    @Override
+    public TaskBitmap bitmap(TaskIndex index) {
+        return index.prioBitmap(prio);
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        return index.countPrio(prio);
+    }
 }
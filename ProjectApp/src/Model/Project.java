@@ -1,10 +1,20 @@
 package Model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Represents a project that contains multiple {@link Task} objects.
@@ -14,16 +24,47 @@ import java.util.List;
  * and can determine its own state (e.g., EMPTY, ONGOING, COMPLETED)
  * based on the states of its tasks.
  * </p>
+ * <p>
+ * Tasks are kept in a {@link TaskTable} indexed by task ID, so looking up and
+ * removing a task is constant time while iteration stays in insertion order.
+ * </p>
+ * <p>
+ * The project state and the time of the last update are kept up to date as
+ * tasks are added, removed and modified, so reading them is constant time.
+ * </p>
+ * <p>
+ * Each project has its own lock, which every method that reads or modifies the
+ * tasks holds while it runs, and which {@link Task} setters take as well. Threads
+ * working on different projects therefore never wait for each other, and the
+ * tasks, indexes and aggregates of one project are always changed together.
+ * </p>
  */
 public class Project implements Comparable<Project>, Serializable {
 
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The serialized form of earlier versions, kept so that old files can be read:
+     * the tasks are written as an {@code ArrayList}.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("title", String.class),
+            new ObjectStreamField("state", ProjectState.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("created", LocalDateTime.class),
+            new ObjectStreamField("nextTaskId", int.class),
+            new ObjectStreamField("tasks", ArrayList.class)
+    };
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
     /** The title of the project. */
     private final String title;
 
-    /** The current state of the project. */
+    /** The current state of the project, or {@code null} if unknown until the tasks are loaded. */
     private ProjectState state;
 
     /** The unique identifier of this project. */
@@ -38,23 +79,105 @@ public class Project implements Comparable<Project>, Serializable {
     /** The ID to assign to the next task added to this project. */
     private int nextTaskId;
 
-    /** The list of tasks that belong to this project. */
-    private final ArrayList<Task> tasks;
+    /** The tasks that belong to this project, indexed by ID. */
+    private final transient TaskTable tasks;
+
+    /** Secondary indexes over the tasks, by state, priority and assignee. */
+    private final transient TaskIndex index;
+
+    /** The manager this project belongs to, notified when the project changes. */
+    private transient ProjectsManager manager;
+
+    /** Loads the tasks on first access, or {@code null} once they are in memory. */
+    private transient volatile ITaskLoader taskLoader;
+
+    /** The creation timestamp in milliseconds since the epoch. */
+    private final transient long createdMillis;
+
+    /** The most recent update of the project or its tasks in milliseconds, or {@link #UNKNOWN} if it must be recomputed. */
+    private transient long lastUpdated;
+
+    /** Whether this project has changed since it was last saved. */
+    private transient volatile boolean dirty;
+
+    /** The tasks as an unmodifiable list, or {@code null} if a task was added or removed since it was made. */
+    private transient volatile List<Task> taskList;
+
+    /** The last snapshot of this project, or {@code null} if the project has changed since. */
+    private transient volatile WeakReference<ProjectSnapshot> snapshot;
+
+    /** Guards the tasks, their indexes and the aggregates derived from them. */
+    private final transient ReentrantLock lock;
+
+    /** The fields read by {@link #readObject}, until {@link #readResolve} replaces this instance. */
+    private transient Project deserialized;
 
     /**
-     * Constructs a new {@code Project} with the specified title, description, and ID.
+     * Constructs a new {@code Project} with the specified title, description, ID and creation time.
      *
      * @param title       the title of the project
      * @param description a short description of the project
      * @param id          the unique project ID
+     * @param created     the creation timestamp
      */
-    Project(String title, String description, int id) {
-        this.tasks = new ArrayList<>();
+    Project(String title, String description, int id, LocalDateTime created) {
+        this.tasks = new TaskTable();
+        this.index = new TaskIndex(tasks);
+        this.lock = new ReentrantLock();
         this.title = title;
         this.description = description;
         this.id = id;
-        created = LocalDateTime.now();
+        this.created = created;
+        this.createdMillis = created == null ? 0 : IClock.toMillis(created);
+        this.state = ProjectState.EMPTY;
+        this.lastUpdated = createdMillis;
         nextTaskId = 0;
+        dirty = true;
+    }
+
+    /**
+     * Recreates a persisted project, without tasks, with its original ID and creation time.
+     * <p>
+     * Intended for the persistence layer; use {@link ProjectsManager#addProject} to create new projects.
+     * </p>
+     *
+     * @param title       the title of the project
+     * @param description a short description of the project
+     * @param id          the unique project ID
+     * @param created     the original creation timestamp
+     * @param nextTaskId  the ID to assign to the next task added
+     * @return the restored project
+     */
+    public static Project restore(String title, String description, int id,
+                                  LocalDateTime created, int nextTaskId) {
+        Project project = new Project(title, description, id, created);
+        project.nextTaskId = nextTaskId;
+        project.dirty = false;
+        return project;
+    }
+
+    /**
+     * Creates a copy of this project with another ID and moves all tasks to it.
+     * Used to resolve duplicate IDs in data saved by older versions.
+     *
+     * @param newId the ID of the copy
+     * @return the copy, which is marked dirty
+     */
+    Project withId(int newId) {
+        lock.lock();
+        try {
+            Project copy = new Project(title, description, newId, created);
+            copy.nextTaskId = nextTaskId;
+            copy.taskLoader = taskLoader;
+            for (Task task : tasks) {
+                copy.attach(task);
+            }
+            copy.state = state;
+            copy.lastUpdated = lastUpdated;
+            return copy;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -65,10 +188,70 @@ public class Project implements Comparable<Project>, Serializable {
      * @return the newly created {@link Task}
      */
     public Task addTask(String description, TaskPrio prio) {
-        Task myTask = new Task(description, prio, nextTaskId);
-        tasks.add(myTask);
-        nextTaskId++;
-        return myTask;
+        lock.lock();
+        try {
+            Task myTask = new Task(description, prio, nextTaskId, clock().millis());
+            tasks();
+            attach(myTask);
+            nextTaskId++;
+            dirty = true;
+            refreshState();
+            if (manager != null) {
+                manager.fireTaskAdded(this, myTask);
+            }
+            return myTask;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recreates a persisted task in this project with all its original values.
+     * <p>
+     * Intended for the persistence layer; listeners are not notified and
+     * {@code nextTaskId} is only advanced if needed to stay above {@code id}.
+     * </p>
+     *
+     * @param id          the unique task ID
+     * @param description the textual description of the task
+     * @param prio        the priority level of the task
+     * @param state       the state of the task, may be {@code null}
+     * @param takenBy     the assignee, may be {@code null}
+     * @param lastUpdated the time of the last modification
+     * @return the restored {@link Task}
+     */
+    public Task restoreTask(int id, String description, TaskPrio prio, TaskState state,
+                            String takenBy, LocalDateTime lastUpdated) {
+        return restoreTask(id, description, prio, state, takenBy, IClock.toMillis(lastUpdated));
+    }
+
+    /**
+     * Recreates a persisted task, like {@link #restoreTask(int, String, TaskPrio, TaskState, String, LocalDateTime)},
+     * with the time of the last modification as it is kept in memory.
+     *
+     * @param id          the unique task ID
+     * @param description the textual description of the task
+     * @param prio        the priority level of the task
+     * @param state       the state of the task, may be {@code null}
+     * @param takenBy     the assignee, may be {@code null}
+     * @param lastUpdated the time of the last modification, in milliseconds since the epoch
+     * @return the restored {@link Task}
+     */
+    public Task restoreTask(int id, String description, TaskPrio prio, TaskState state,
+                            String takenBy, long lastUpdated) {
+        lock.lock();
+        try {
+            Task myTask = new Task(description, prio, id, state, takenBy, lastUpdated);
+            tasks();
+            attach(myTask);
+            if (id >= nextTaskId) {
+                nextTaskId = id + 1;
+            }
+            refreshState();
+            return myTask;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -78,32 +261,491 @@ public class Project implements Comparable<Project>, Serializable {
      * @return {@code true} if the task was successfully removed, otherwise {@code false}
      */
     public boolean removeTask(Task task) {
-        return tasks.remove(task);
+        lock.lock();
+        try {
+            boolean removed = tasks().remove(task);
+            if (removed) {
+                taskList = null;
+                snapshot = null;
+                index.remove(task);
+                if (manager != null) {
+                    manager.dropTask(task);
+                }
+                task.setOwner(null);
+                if (lastUpdated != UNKNOWN && task.getLastUpdatedMillis() >= lastUpdated) {
+                    lastUpdated = UNKNOWN;
+                }
+                dirty = true;
+                refreshState();
+                if (manager != null) {
+                    manager.fireTaskRemoved(this, task);
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Returns the most recent update time across all tasks in the project.
+     * Applies all operations of a batch at once, as described in {@link TaskBatch}.
      * <p>
-     * If no tasks exist, the creation time of the project is returned.
+     * Listeners of the manager, such as the journal, are told about the batch as
+     * one group. Use {@link ProjectsManager#apply} to change several projects at once.
      * </p>
      *
-     * @return the {@link LocalDateTime} of the most recent update
+     * @param batch the operations to apply
+     * @return the tasks added by the batch, in the order they were added
+     * @throws IllegalArgumentException if the batch is for another project or names a task
+     *                                  that is not in this project; nothing is changed then
+     * @throws IllegalStateException    if the batch has already been applied or assigns a task
+     *                                  that is already taken; nothing is changed then
      */
-    public LocalDateTime getLastupdated() {
+    public List<Task> apply(TaskBatch batch) {
+        if (batch.getProject() != this) {
+            throw new IllegalArgumentException("The batch is for another project.");
+        }
+        lock.lock();
+        try {
+            checkBatch(batch);
+            applyChecked(batch, clock().millis());
+            if (manager != null) {
+                manager.fireBatch(List.of(batch));
+            }
+            return batch.getAddedTasks();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the tasks if needed and checks that a batch can be applied.
+     * Called with the lock of this project held.
+     */
+    void checkBatch(TaskBatch batch) {
+        tasks();
+        batch.check();
+    }
+
+    /**
+     * Applies a checked batch with one timestamp: every named task is unindexed
+     * once, changed, stamped and indexed again once, and the aggregates are
+     * refreshed at the end. Tasks whose priority and description stay the same
+     * keep their place in the importance order. Listeners are not notified. Called with the lock of
+     * this project held.
+     *
+     * @param batch the batch, already passed to {@link #checkBatch}
+     * @param now   the timestamp of all changed and added tasks
+     */
+    void applyChecked(TaskBatch batch, long now) {
+        batch.classify();
+        Set<Task> updated = batch.updated();
+        Set<Task> removed = batch.removed();
+        for (Task task : updated) {
+            if (batch.reorders(task)) {
+                index.remove(task);
+            } else {
+                index.removeFromBuckets(task);
+            }
+        }
+        for (Task task : removed) {
+            index.remove(task);
+        }
+        if (manager != null) {
+            manager.unindexTasks(batch);
+        }
+        batch.storeChanges();
+        for (Task task : removed) {
+            tasks.remove(task);
+            task.setOwner(null);
+            if (lastUpdated != UNKNOWN && task.getLastUpdatedMillis() >= lastUpdated) {
+                lastUpdated = UNKNOWN;
+            }
+        }
+        for (Task task : updated) {
+            long previous = task.getLastUpdatedMillis();
+            task.storeLastUpdated(now);
+            if (batch.reorders(task)) {
+                index.add(task);
+            } else {
+                index.addToBuckets(task);
+            }
+            taskTouched(task, previous);
+        }
+        batch.addTasks((description, prio) -> {
+            Task task = new Task(description, prio, nextTaskId, now);
+            store(task);
+            nextTaskId++;
+            return task;
+        });
+        if (manager != null) {
+            manager.indexTasks(batch);
+        }
+        if (!removed.isEmpty()) {
+            taskList = null;
+        }
+        snapshot = null;
+        dirty = true;
+        refreshState();
+        batch.markApplied();
+    }
+
+    /**
+     * Stores a task in the task table and the indexes and makes this project its owner.
+     */
+    private void attach(Task task) {
+        store(task);
+        if (manager != null) {
+            manager.indexTask(task, true);
+        }
+    }
+
+    /**
+     * Stores a task in the task table and the indexes of this project, but not
+     * those of the manager, and makes this project its owner.
+     */
+    private void store(Task task) {
+        tasks.add(task);
+        taskList = null;
+        snapshot = null;
+        index.add(task);
+        task.setOwner(this);
+        if (lastUpdated != UNKNOWN && task.getLastUpdatedMillis() > lastUpdated) {
+            lastUpdated = task.getLastUpdatedMillis();
+        }
+    }
+
+    /**
+     * Derives the state of the project from the task counts of the index.
+     */
+    private ProjectState computeState() {
         if (tasks.isEmpty()) {
-            return created;
+            return ProjectState.EMPTY;
+        }
+        return index.countState(TaskState.DONE) == tasks.size() ? ProjectState.COMPLETED : ProjectState.ONGOING;
+    }
+
+    /**
+     * Recomputes the state after a change and tells the manager if it changed.
+     */
+    private void refreshState() {
+        setState(computeState());
+    }
+
+    private void setState(ProjectState newState) {
+        ProjectState oldState = state;
+        state = newState;
+        if (oldState != newState && manager != null) {
+            manager.projectStateChanged(oldState, newState);
         }
+    }
 
-        LocalDateTime lastUpdated = created;
+    /**
+     * Called by a task of this project just before one of its fields is modified.
+     *
+     * @param task    the task about to be modified
+     * @param strings whether the description or the assignee is modified
+     */
+    void taskChanging(Task task, boolean strings) {
+        index.remove(task);
+        if (manager != null) {
+            manager.unindexTask(task, strings);
+        }
+    }
 
-        for (Task task : tasks) {
-            LocalDateTime taskUpdated = task.getLastUpdated();
-            if (taskUpdated.isAfter(lastUpdated)) {
-                lastUpdated = taskUpdated;
+    /**
+     * Called by a task of this project after it has been modified.
+     *
+     * @param task    the modified task
+     * @param strings whether the description or the assignee was modified
+     */
+    void taskUpdated(Task task, boolean strings) {
+        snapshot = null;
+        index.add(task);
+        if (manager != null) {
+            manager.indexTask(task, strings);
+        }
+        dirty = true;
+        refreshState();
+        if (manager != null) {
+            manager.fireTaskUpdated(this, task);
+        }
+    }
+
+    /**
+     * Called by a task of this project when its timestamp has been set.
+     *
+     * @param task     the task whose timestamp changed
+     * @param previous the timestamp before the change
+     */
+    void taskTouched(Task task, long previous) {
+        snapshot = null;
+        if (lastUpdated == UNKNOWN) {
+            return;
+        }
+        long current = task.getLastUpdatedMillis();
+        if (current > lastUpdated) {
+            lastUpdated = current;
+        } else if (current < previous && previous >= lastUpdated) {
+            lastUpdated = UNKNOWN; // the latest task was moved back in time
+        }
+    }
+
+    /**
+     * @return the clock of the manager, or the system clock if this project has no manager
+     */
+    IClock clock() {
+        return manager != null ? manager.getClock() : IClock.SYSTEM;
+    }
+
+    /**
+     * @return the lock that guards the tasks of this project
+     */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * Defers loading of this project's tasks until they are first accessed.
+     * <p>
+     * Intended for the persistence layer, which restores the project without
+     * tasks and lets the loader add them with {@link #restoreTask}. The state
+     * and last update of the project are not known until the tasks are loaded.
+     * </p>
+     *
+     * @param taskLoader the loader to call on first access to the tasks
+     */
+    public void setTaskLoader(ITaskLoader taskLoader) {
+        loadLater(taskLoader, null, UNKNOWN);
+    }
+
+    /**
+     * Defers loading of this project's tasks until they are first accessed,
+     * with the state and last update as they were when the project was saved,
+     * so that these can be read without loading the tasks.
+     *
+     * @param taskLoader  the loader to call on first access to the tasks
+     * @param state       the saved state of the project, or {@code null} if unknown
+     * @param lastUpdated the saved time of the last update, or {@code null} if unknown
+     */
+    public void setTaskLoader(ITaskLoader taskLoader, ProjectState state, LocalDateTime lastUpdated) {
+        loadLater(taskLoader, state, lastUpdated == null ? UNKNOWN : IClock.toMillis(lastUpdated));
+    }
+
+    /**
+     * Defers loading of this project's tasks, like {@link #setTaskLoader(ITaskLoader, ProjectState, LocalDateTime)},
+     * with the last update as it is kept in memory.
+     *
+     * @param taskLoader  the loader to call on first access to the tasks
+     * @param state       the saved state of the project
+     * @param lastUpdated the saved time of the last update, in milliseconds since the epoch
+     */
+    public void setTaskLoader(ITaskLoader taskLoader, ProjectState state, long lastUpdated) {
+        loadLater(taskLoader, state, lastUpdated);
+    }
+
+    private void loadLater(ITaskLoader taskLoader, ProjectState state, long lastUpdated) {
+        lock.lock();
+        try {
+            this.taskLoader = taskLoader;
+            taskList = null;
+            snapshot = null;
+            this.state = state;
+            this.lastUpdated = lastUpdated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the loader that adds the tasks on their first access, or
+     *         {@code null} if the tasks are in memory
+     */
+    public ITaskLoader getTaskLoader() {
+        return taskLoader;
+    }
+
+    /**
+     * @return {@code true} if the tasks of this project are in memory
+     */
+    public boolean isLoaded() {
+        return taskLoader == null;
+    }
+
+    /**
+     * Returns the number of tasks, without loading them if the loader knows how many there are.
+     *
+     * @return the number of tasks of this project
+     */
+    int taskCount() {
+        ITaskLoader loader = taskLoader;
+        int count = loader != null ? loader.taskCount() : -1;
+        return count >= 0 ? count : getTasks().size();
+    }
+
+    /**
+     * Returns the task list, loading it first if it has not been accessed yet.
+     *
+     * @return the tasks of this project
+     */
+    private TaskTable tasks() {
+        if (taskLoader != null) {
+            ITaskLoader loader = taskLoader;
+            ProjectState savedState = state;
+            long savedLastUpdated = lastUpdated;
+            taskLoader = null;
+            try {
+                loader.loadTasks(this);
+                if (manager != null) {
+                    manager.projectLoaded(this);
+                }
+            } catch (RuntimeException e) {
+                for (Task task : tasks) {
+                    index.remove(task);
+                    if (manager != null) {
+                        manager.dropTask(task);
+                    }
+                }
+                tasks.clear();
+                taskList = null;
+                snapshot = null;
+                taskLoader = loader;
+                setState(savedState);
+                lastUpdated = savedLastUpdated;
+                throw e;
             }
         }
+        return tasks;
+    }
+
+    /**
+     * Returns the secondary indexes, loading the tasks first if needed.
+     * The caller must hold the {@link #lock} of this project while it uses them.
+     *
+     * @return the indexes of this project
+     */
+    TaskIndex index() {
+        lock.lock();
+        try {
+            tasks();
+        } finally {
+            lock.unlock();
+        }
+        return index;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        lock.lock();
+        try {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("title", title);
+            fields.put("state", state);
+            fields.put("id", id);
+            fields.put("description", description);
+            fields.put("created", created);
+            fields.put("nextTaskId", nextTaskId);
+            fields.put("tasks", tasks().toList());
+            out.writeFields();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Object taskList = fields.get("tasks", null);
+        deserialized = new Project((String) fields.get("title", null),
+                (String) fields.get("description", null), fields.get("id", 0),
+                (LocalDateTime) fields.get("created", null));
+        deserialized.nextTaskId = fields.get("nextTaskId", 0);
+        deserialized.dirty = false;
+        if (taskList instanceof List<?>) {
+            for (Object task : (List<?>) taskList) {
+                deserialized.attach((Task) task);
+            }
+        }
+        deserialized.state = deserialized.computeState();
+    }
 
-        return lastUpdated;
+    @Serial
+    private Object readResolve() {
+        return deserialized;
+    }
+
+    /**
+     * Sets the manager this project belongs to and links all tasks
+     * back to this project. Owner links are transient, so this is also
+     * how they are restored after deserialization. Tasks that have not
+     * been loaded yet get their owner when they are restored.
+     * <p>
+     * The loaded tasks are moved from the assignee and text indexes of the
+     * previous manager to those of the new one, and the project from the state
+     * counts of the previous manager to those of the new one.
+     * </p>
+     *
+     * @param manager the owning manager, or {@code null} to detach
+     */
+    void setManager(ProjectsManager manager) {
+        lock.lock();
+        try {
+            ProjectState current = getProjectState();
+            if (this.manager != null) {
+                for (Task task : tasks) {
+                    this.manager.dropTask(task);
+                }
+                this.manager.projectStateChanged(current, null);
+            }
+            this.manager = manager;
+            if (manager != null) {
+                manager.projectStateChanged(null, current);
+            }
+            for (Task task : tasks) {
+                task.setOwner(this);
+                if (manager != null) {
+                    manager.indexTask(task, true);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the most recent update time across all tasks in the project.
+     * <p>
+     * If no tasks exist, the creation time of the project is returned.
+     * The value is maintained as tasks change; it is only recomputed from
+     * all tasks after the most recently updated task was removed.
+     * </p>
+     *
+     * @return the {@link LocalDateTime} of the most recent update
+     */
+    public LocalDateTime getLastupdated() {
+        long millis = getLastUpdatedMillis();
+        return millis == createdMillis ? created : IClock.toDateTime(millis);
+    }
+
+    /**
+     * Returns the most recent update time as {@link #getLastupdated()}, without creating a date object.
+     *
+     * @return the time of the most recent update in milliseconds since the epoch
+     */
+    public long getLastUpdatedMillis() {
+        lock.lock();
+        try {
+            if (lastUpdated == UNKNOWN) {
+                long latest = createdMillis;
+                for (Task task : tasks()) {
+                    latest = Math.max(latest, task.getLastUpdatedMillis());
+                }
+                lastUpdated = latest;
+            }
+            return lastUpdated;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -138,7 +780,12 @@ public class Project implements Comparable<Project>, Serializable {
      * @return the ID that will be assigned to the next task created
      */
     public int getNextTaskId() {
-        return nextTaskId;
+        lock.lock();
+        try {
+            return nextTaskId;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -147,7 +794,29 @@ public class Project implements Comparable<Project>, Serializable {
      * @param nextTaskId the new next task ID
      */
     public void setNextTaskId(int nextTaskId) {
-        this.nextTaskId = nextTaskId;
+        lock.lock();
+        try {
+            this.nextTaskId = nextTaskId;
+            snapshot = null;
+            dirty = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if this project or any of its tasks has changed since
+     *         it was created, restored or last marked as saved
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks this project as saved; it becomes dirty again on the next change.
+     */
+    public void markClean() {
+        dirty = false;
     }
 
     /**
@@ -157,12 +826,12 @@ public class Project implements Comparable<Project>, Serializable {
      * @return the matching {@link Task}, or {@code null} if not found
      */
     public Task getTaskById(int id) {
-        for (Task task : tasks) {
-            if (task.getId() == id) {
-                return task;
-            }
+        lock.lock();
+        try {
+            return tasks().get(id);
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
     /**
@@ -186,44 +855,341 @@ public class Project implements Comparable<Project>, Serializable {
      *   <li>If all tasks are DONE → {@link ProjectState#COMPLETED}</li>
      *   <li>Otherwise → {@link ProjectState#ONGOING}</li>
      * </ul>
+     * The state is maintained as tasks change, so this is constant time.
      *
      * @return the {@link ProjectState} representing the project's overall state
      */
     public ProjectState getProjectState() {
-        if (tasks.isEmpty()) {
-            return ProjectState.EMPTY;
-        }
-
-        boolean allDone = true;
-        for (Task task : tasks) {
-            if (task.getState() != TaskState.DONE) {
-                allDone = false;
-                break;
+        lock.lock();
+        try {
+            if (state == null) {
+                tasks();
+                state = computeState();
             }
+            return state;
+        } finally {
+            lock.unlock();
         }
-
-        return allDone ? ProjectState.COMPLETED : ProjectState.ONGOING;
     }
 
     /**
      * Finds all tasks in this project that match a given condition.
+     * <p>
+     * Matchers that can be answered from the secondary indexes, such as the
+     * built-in ones, are answered without looking at the other tasks.
+     * </p>
      *
      * @param matcher an {@link ITaskMatcher} used to check each task
      * @return a list of tasks that satisfy the matcher condition
      */
     public ArrayList<Task> findTasks(ITaskMatcher matcher) {
-        ArrayList<Task> result = new ArrayList<Task>();
-        for (Task myTask : tasks) {
-            if (matcher.match(myTask)) {
-                result.add(myTask);
+        lock.lock();
+        try {
+            ArrayList<Task> indexed = matcher.lookup(index());
+            if (indexed != null) {
+                return indexed;
+            }
+            ArrayList<Task> result = new ArrayList<Task>();
+            for (Task myTask : tasks()) {
+                if (matcher.match(myTask)) {
+                    result.add(myTask);
+                }
             }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts the tasks in this project that match a given condition, without
+     * building a list of them.
+     * <p>
+     * Matchers with a {@link ITaskMatcher#bitmap bitmap}, such as the built-in ones
+     * and their combinations, are counted from the bitmap.
+     * </p>
+     *
+     * @param matcher an {@link ITaskMatcher} used to check each task
+     * @return the number of tasks that satisfy the matcher condition
+     */
+    public int countTasks(ITaskMatcher matcher) {
+        lock.lock();
+        try {
+            TaskBitmap bitmap = matcher.bitmap(index());
+            if (bitmap != null) {
+                return bitmap.cardinality();
+            }
+            int count = 0;
+            for (Task task : tasks()) {
+                if (matcher.match(task)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Performs an action for every task in this project that matches a given
+     * condition, in ID order, without building a list of them.
+     * <p>
+     * The action may modify the tasks it is given, but must not add or remove
+     * tasks of this project. It is called with the lock of this project held,
+     * so other threads cannot modify the project until the iteration ends.
+     * </p>
+     *
+     * @param matcher an {@link ITaskMatcher} used to check each task
+     * @param action  the action to perform for each matching task
+     */
+    public void forEachTask(ITaskMatcher matcher, Consumer<Task> action) {
+        lock.lock();
+        try {
+            TaskIndex taskIndex = index();
+            TaskBitmap bitmap = matcher.bitmap(taskIndex);
+            if (bitmap != null) {
+                // the bitmap may be one the index changes when the action modifies a task
+                bitmap.copy().forEach(id -> action.accept(taskIndex.task(id)));
+                return;
+            }
+            for (Task task : tasks()) {
+                if (matcher.match(task)) {
+                    action.accept(task);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the tasks in this project that match a given condition,
+     * to be combined with the results of other queries.
+     *
+     * @param matcher an {@link ITaskMatcher} used to check each task
+     * @return a new bitmap of the IDs of the matching tasks
+     * @see #getTaskById
+     */
+    public TaskBitmap matchBitmap(ITaskMatcher matcher) {
+        lock.lock();
+        try {
+            TaskBitmap bitmap = matcher.bitmap(index());
+            if (bitmap != null) {
+                // the bitmap may be one the index keeps changing
+                return bitmap.copy();
+            }
+            TaskBitmap result = new TaskBitmap();
+            for (Task task : tasks()) {
+                if (matcher.match(task)) {
+                    result.add(task.getId());
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Answers a condition from the secondary indexes only.
+     *
+     * @param matcher the condition the tasks must meet
+     * @return a new list of the matching tasks, or {@code null} if the indexes cannot answer the matcher
+     */
+    ArrayList<Task> lookup(ITaskMatcher matcher) {
+        lock.lock();
+        try {
+            return matcher.lookup(index());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts the tasks that meet a condition from the bitmaps of the indexes only.
+     *
+     * @param matcher the condition the tasks must meet
+     * @return the number of matching tasks, or {@code -1} if the matcher has no bitmap
+     */
+    int countIndexed(ITaskMatcher matcher) {
+        lock.lock();
+        try {
+            TaskBitmap bitmap = matcher.bitmap(index());
+            return bitmap != null ? bitmap.cardinality() : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the most important tasks that match a condition, in
+     * {@link Task#BY_IMPORTANCE} order: highest priority first, then by
+     * description and ID.
+     * <p>
+     * The tasks are kept sorted, so this walks the sorted tasks until {@code k}
+     * matches are found instead of sorting the project. When the indexes show that
+     * few tasks match, those are looked up and sorted instead.
+     * </p>
+     *
+     * @param k       the maximum number of tasks to return
+     * @param matcher the condition the tasks must meet
+     * @return a new list of at most {@code k} tasks
+     */
+    public List<Task> topK(int k, ITaskMatcher matcher) {
+        lock.lock();
+        try {
+            List<Task> result = new ArrayList<>();
+            if (k <= 0) {
+                return result;
+            }
+            TaskIndex taskIndex = index();
+            long estimate = matcher.estimate(taskIndex);
+            if (estimate >= 0 && estimate * estimate < (long) k * tasks.size()) {
+                ArrayList<Task> candidates = matcher.lookup(taskIndex);
+                if (candidates != null) {
+                    candidates.sort(Task.BY_IMPORTANCE);
+                    return new ArrayList<>(candidates.subList(0, Math.min(k, candidates.size())));
+                }
+            }
+            for (Task task : taskIndex.byImportance()) {
+                if (matcher.match(task)) {
+                    result.add(task);
+                    if (result.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
         }
-        return result;
     }
 
+    /**
+     * Returns the {@code k} most important tasks of this project, as {@link #topK(int, ITaskMatcher)}.
+     *
+     * @param k the maximum number of tasks to return
+     * @return a new list of at most {@code k} tasks
+     */
+    public List<Task> topK(int k) {
+        return topK(k, task -> true);
+    }
+
+    /**
+     * Pages through the tasks in {@link Task#BY_IMPORTANCE} order.
+     * <p>
+     * Pass {@code null} for the first page and the last task of a page to get the
+     * next one. The cursor is compared by its current values, so it may have been
+     * modified or removed since the previous page was read.
+     * </p>
+     *
+     * @param cursor the task to continue after, or {@code null} to start from the most important task
+     * @param limit  the maximum number of tasks to return
+     * @return a new list of at most {@code limit} tasks that come after {@code cursor}
+     */
+    public List<Task> tasksAfter(Task cursor, int limit) {
+        lock.lock();
+        try {
+            NavigableSet<Task> ordered = index().byImportance();
+            List<Task> page = new ArrayList<>();
+            for (Task task : cursor == null ? ordered : ordered.tailSet(cursor, false)) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                page.add(task);
+            }
+            return page;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the tasks of this project in ID order, as an unmodifiable list.
+     * <p>
+     * The list is kept until a task is added or removed, so repeated calls
+     * return the same list without copying or locking. The tasks in it are the
+     * live tasks; use {@link #snapshot()} for their values at one point in time.
+     * </p>
+     *
+     * @return the tasks of this project
+     */
     public List<Task> getTasks(){
-        return new ArrayList<>(tasks);
+        List<Task> list = taskList;
+        if (list != null) {
+            return list;
+        }
+        lock.lock();
+        try {
+            if (taskList == null) {
+                taskList = Collections.unmodifiableList(tasks().toList());
+            }
+            return taskList;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads this project and its tasks while no other thread can change them.
+     * <p>
+     * The reader is called with the lock of this project held, so everything it
+     * reads belongs to the same moment, without copying the tasks. It must not
+     * modify the project. Tasks that have not been loaded yet are only loaded if
+     * the reader accesses them.
+     * </p>
+     *
+     * @param reader the action that reads the project
+     */
+    public void readLocked(Consumer<Project> reader) {
+        lock.lock();
+        try {
+            reader.accept(this);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an unchangeable copy of this project and its tasks as they are now.
+     * <p>
+     * Every call copies all tasks of the project, unless an earlier snapshot
+     * is still in use and the project and its tasks have not changed since;
+     * that snapshot is then returned again. A change to a single task
+     * therefore makes the next call copy the whole project. Snapshots are only
+     * weakly referenced by the project, so they take no memory once their
+     * callers are done with them. To read a project once, for example to save
+     * it, {@link #readLocked} avoids the copy.
+     * </p>
+     *
+     * @return a consistent snapshot of this project
+     */
+    public ProjectSnapshot snapshot() {
+        WeakReference<ProjectSnapshot> ref = snapshot;
+        ProjectSnapshot current = ref == null ? null : ref.get();
+        if (current != null) {
+            return current;
+        }
+        lock.lock();
+        try {
+            ref = snapshot;
+            current = ref == null ? null : ref.get();
+            if (current == null) {
+                List<Task> copies = new ArrayList<>(tasks().size());
+                for (Task task : tasks) {
+                    copies.add(task.frozenCopy());
+                }
+                current = new ProjectSnapshot(this, nextTaskId, getProjectState(), getLastUpdatedMillis(),
+                        Collections.unmodifiableList(copies));
+                snapshot = new WeakReference<>(current);
+            }
+            return current;
+        } finally {
+            lock.unlock();
+        }
     }
+
     /**
      * Finds all tasks in this project that match a given condition.
      * @return the different members of the task class
@@ -0,0 +1,96 @@
+package Model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An unchangeable copy of a {@link Project} and its tasks at one point in time.
+ * <p>
+ * Taken by {@link Project#snapshot()} under the lock of the project, so the
+ * tasks, the state and the last update all belong to the same moment. The tasks
+ * are frozen copies: their getters return the values at that moment and their
+ * setters throw {@link UnsupportedOperationException}. A snapshot can therefore
+ * be read for as long as needed, on any thread, while the project keeps changing.
+ * </p>
+ * <p>
+ * A snapshot is a full copy of its project: a project hands out the same
+ * snapshot again only while it is still in use and nothing in the project has
+ * changed, and otherwise copies all of its tasks, even if only one changed.
+ * </p>
+ */
+public final class ProjectSnapshot {
+
+    private final Project project;
+    private final int id;
+    private final String title;
+    private final String description;
+    private final LocalDateTime created;
+    private final int nextTaskId;
+    private final ProjectState state;
+    private final long lastUpdated;
+    private final List<Task> tasks;
+
+    ProjectSnapshot(Project project, int nextTaskId, ProjectState state, long lastUpdated, List<Task> tasks) {
+        this.project = project;
+        this.id = project.getId();
+        this.title = project.getTitle();
+        this.description = project.getDescription();
+        this.created = project.getCreated();
+        this.nextTaskId = nextTaskId;
+        this.state = state;
+        this.lastUpdated = lastUpdated;
+        this.tasks = tasks;
+    }
+
+    /**
+     * @return the live project this snapshot was taken of
+     */
+    public Project getProject() {
+        return project;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    public int getNextTaskId() {
+        return nextTaskId;
+    }
+
+    public ProjectState getProjectState() {
+        return state;
+    }
+
+    /**
+     * @return the most recent update of the project or its tasks, in milliseconds since the epoch
+     */
+    public long getLastUpdatedMillis() {
+        return lastUpdated;
+    }
+
+    /**
+     * @return the most recent update of the project or its tasks, as {@link Project#getLastupdated()}
+     */
+    public LocalDateTime getLastupdated() {
+        return created != null && lastUpdated == IClock.toMillis(created) ? created : IClock.toDateTime(lastUpdated);
+    }
+
+    /**
+     * @return the frozen tasks in ID order, as an unmodifiable list
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+}
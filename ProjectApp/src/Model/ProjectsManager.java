@@ -1,10 +1,20 @@
 package Model;
 import Model.Project;
-import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Manages a collection of {@link Project} objects.
@@ -12,10 +22,66 @@ import java.util.Objects;
  * This class is responsible for adding, removing, and searching projects.
  * It also checks that project titles are unique and can retrieve the highest project ID.
  * </p>
+ * <p>
+ * Projects are indexed by ID and by title in hash maps, so lookups, the title
+ * uniqueness check, adding and removing are constant time. A sorted title index
+ * answers prefix and range queries.
+ * </p>
+ * <p>
+ * The number of projects in each {@link ProjectState} is kept up to date as
+ * projects report state changes, so {@link #getState()} does not visit the projects.
+ * </p>
+ * <p>
+ * An assignee index over the tasks of all projects finds everything taken by
+ * one person in time proportional to the number of such tasks. Projects whose
+ * tasks have not been loaded yet are loaded on the first such query.
+ * </p>
+ * <p>
+ * A full-text index over project titles and descriptions and task descriptions
+ * answers word and prefix searches without looking at every project and task.
+ * </p>
+ * <p>
+ * Task descriptions and assignees are interned in a {@link StringDictionary}
+ * as tasks are added or modified, so equal strings are kept only once. They
+ * are released when they change or their task leaves the manager, so the
+ * dictionary only holds strings that tasks still use.
+ * </p>
+ * <p>
+ * A manager can be shared by several threads. Projects are kept in concurrent
+ * maps, so looking them up never blocks, and adding or removing a project is
+ * synchronized on the manager. The tasks of each project are guarded by the
+ * project's own lock, so threads that modify different projects run in parallel.
+ * The indexes that span all projects do not have a common lock: the state
+ * counts are atomic, the assignee index locks one assignee at a time, the text
+ * indexes are split into stripes with their own read-write locks, and the
+ * dictionary is locked only while strings that changed are interned. A change
+ * only updates the indexes its fields appear in, so changing the state or
+ * priority of a task never touches the text index or the dictionary, and
+ * queries lock only the part of an index they read. Locks are always taken in
+ * the order manager, project, indexes.
+ * </p>
  */
 public class ProjectsManager {
-    private int nextProjectId;
-    private List<Project> projects;
+    private final AtomicInteger nextProjectId;
+    // ordered by ID, which is the order projects are added in
+    private final ConcurrentMap<Integer, Project> projectsById;
+    private final ConcurrentMap<String, Project> projectsByTitle;
+    private final NavigableMap<String, Project> sortedTitles;
+    // the projects as returned by getProjects, or null after a project was added or removed
+    private volatile List<Project> projectList;
+    // projects from old files whose title is already used by another project
+    private int shadowedTitles;
+    // the number of projects per state, by ordinal
+    private final AtomicIntegerArray stateCounts;
+    private final AssigneeIndex assignees;
+    private final StripedTextIndex<Project> projectText;
+    private final StripedTextIndex<Task> taskText;
+    // guarded by its own monitor
+    private final StringDictionary dictionary;
+    // projects whose tasks are not in the assignee index yet
+    private final Set<Project> unloadedProjects;
+    private final List<IProjectsListener> listeners;
+    private volatile IClock clock;
 
 
     /**
@@ -23,18 +89,291 @@ public class ProjectsManager {
      *
      */
     public ProjectsManager(){
-        this.nextProjectId = 0;
-        this.projects = new ArrayList<>();
+        this.nextProjectId = new AtomicInteger();
+        this.projectsById = new ConcurrentSkipListMap<>();
+        this.projectsByTitle = new ConcurrentHashMap<>();
+        this.sortedTitles = new ConcurrentSkipListMap<>();
+        this.stateCounts = new AtomicIntegerArray(ProjectState.values().length);
+        this.assignees = new AssigneeIndex();
+        this.projectText = new StripedTextIndex<>();
+        this.taskText = new StripedTextIndex<>();
+        this.dictionary = new StringDictionary();
+        this.unloadedProjects = ConcurrentHashMap.newKeySet();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.clock = IClock.SYSTEM;
+    }
+
+    /**
+     * @return the number of distinct task descriptions and assignees in the dictionary
+     */
+    public int getDistinctStrings() {
+        synchronized (dictionary) {
+            return dictionary.size();
+        }
+    }
+
+    /**
+     * @return the number of task descriptions and assignees that share their string with another
+     */
+    public long getDuplicateStrings() {
+        synchronized (dictionary) {
+            return dictionary.getDuplicates();
+        }
+    }
+
+    /**
+     * @return an estimate of the heap saved by sharing equal task descriptions and assignees, in bytes
+     */
+    public long getSavedStringBytes() {
+        synchronized (dictionary) {
+            return dictionary.getSavedBytes();
+        }
+    }
+
+    /**
+     * @return the clock that stamps new projects and task updates
+     */
+    public IClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replaces the clock that stamps new projects and task updates, for example
+     * with a {@link CoarseClock} during bulk updates or a {@link ManualClock} in tests.
+     *
+     * @param clock the new clock
+     */
+    public void setClock(IClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a listener that is notified of every change to the projects and their tasks.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(IProjectsListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously added listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(IProjectsListener listener) {
+        listeners.remove(listener);
+    }
+
+    void fireTaskAdded(Project project, Task task) {
+        for (IProjectsListener l : listeners) {
+            l.taskAdded(project, task);
+        }
+    }
+
+    void fireTaskRemoved(Project project, Task task) {
+        for (IProjectsListener l : listeners) {
+            l.taskRemoved(project, task);
+        }
+    }
+
+    void fireTaskUpdated(Project project, Task task) {
+        for (IProjectsListener l : listeners) {
+            l.taskUpdated(project, task);
+        }
+    }
+
+    /**
+     * Reports applied batches to the listeners as one group, every affected task once.
+     */
+    void fireBatch(List<TaskBatch> batches) {
+        for (IProjectsListener l : listeners) {
+            l.batchStarted();
+            for (TaskBatch batch : batches) {
+                Project project = batch.getProject();
+                for (Task task : batch.getAddedTasks()) {
+                    l.taskAdded(project, task);
+                }
+                for (Task task : batch.updated()) {
+                    l.taskUpdated(project, task);
+                }
+                for (Task task : batch.removed()) {
+                    l.taskRemoved(project, task);
+                }
+            }
+            l.batchFinished();
+        }
+    }
+
+    /**
+     * Called by a project of this manager when its state changes.
+     *
+     * @param from the previous state
+     * @param to   the new state
+     */
+    void projectStateChanged(ProjectState from, ProjectState to) {
+        if (from != null) {
+            stateCounts.decrementAndGet(from.ordinal());
+        }
+        if (to != null) {
+            stateCounts.incrementAndGet(to.ordinal());
+        }
+    }
+
+    /**
+     * Called by a project of this manager when a task is added or has been modified.
+     *
+     * @param strings whether the description or assignee may have changed, so
+     *                that the dictionary and the text index must see them
+     */
+    void indexTask(Task task, boolean strings) {
+        if (strings) {
+            synchronized (dictionary) {
+                task.internStrings(dictionary);
+            }
+            taskText.put(task, task.getDescription());
+        }
+        assignees.add(task);
+    }
+
+    /**
+     * Called by a project of this manager when a task is about to be modified.
+     *
+     * @param strings whether the description or assignee may change
+     */
+    void unindexTask(Task task, boolean strings) {
+        if (strings) {
+            synchronized (dictionary) {
+                task.releaseStrings(dictionary);
+            }
+        }
+        assignees.remove(task);
+    }
+
+    /**
+     * Called by a project of this manager when a task leaves it.
+     */
+    void dropTask(Task task) {
+        unindexTask(task, true);
+        taskText.remove(task);
+    }
+
+    /**
+     * Called by a project of this manager before it applies a batch, like
+     * {@link #unindexTask} for the changed tasks and {@link #dropTask} for the
+     * removed ones.
+     */
+    void unindexTasks(TaskBatch batch) {
+        for (Task task : batch.updated()) {
+            unindexTask(task, batch.changesStrings(task));
+        }
+        for (Task task : batch.removed()) {
+            dropTask(task);
+        }
+    }
+
+    /**
+     * Called by a project of this manager after it has applied a batch, like
+     * {@link #indexTask} for the changed and added tasks. The strings of a
+     * changed task are only interned and indexed again if the batch changed them.
+     */
+    void indexTasks(TaskBatch batch) {
+        for (Task task : batch.updated()) {
+            indexTask(task, batch.changesStrings(task));
+        }
+        for (Task task : batch.getAddedTasks()) {
+            indexTask(task, true);
+        }
+    }
+
+    /**
+     * Called by a project of this manager once its tasks have been loaded.
+     */
+    void projectLoaded(Project project) {
+        unloadedProjects.remove(project);
+    }
+
+    private void clearStateCounts() {
+        for (ProjectState state : ProjectState.values()) {
+            stateCounts.set(state.ordinal(), 0);
+        }
     }
 
     /**
      * Replaces the current list of projects with a new one.
+     * <p>
+     * Files saved by older versions may contain several projects with the same ID;
+     * such projects are given new, unused IDs.
+     * </p>
+     * <p>
+     * Threads that read the projects while they are replaced may see some of
+     * the old or new projects missing.
+     * </p>
      *
      * @param incomingProjects the list of projects to set
      */
-    public void setProjects(List<Project> incomingProjects) {
-        projects.clear();
-        this.projects = new ArrayList<>(incomingProjects);
+    public synchronized void setProjects(List<Project> incomingProjects) {
+        for (Project p : projectsById.values()) {
+            p.setManager(null);
+        }
+        projectsById.clear();
+        projectList = null;
+        projectsByTitle.clear();
+        sortedTitles.clear();
+        shadowedTitles = 0;
+        clearStateCounts();
+        assignees.clear();
+        projectText.clear();
+        taskText.clear();
+        unloadedProjects.clear();
+
+        int highest = -1;
+        for (Project p : incomingProjects) {
+            highest = Math.max(highest, p.getId());
+        }
+        nextProjectId.accumulateAndGet(highest + 1, Math::max);
+
+        for (Project p : incomingProjects) {
+            if (projectsById.containsKey(p.getId())) {
+                p = p.withId(nextProjectId.getAndIncrement());
+            }
+            index(p);
+        }
+    }
+
+    /**
+     * Adds a project to all indexes and attaches it to this manager.
+     */
+    private void index(Project p) {
+        projectList = null;
+        p.setManager(this);
+        projectText.put(p, p.getTitle() + "\n" + p.getDescription());
+        if (!p.isLoaded()) {
+            unloadedProjects.add(p);
+        }
+        if (projectsByTitle.putIfAbsent(p.getTitle(), p) == null) {
+            sortedTitles.put(p.getTitle(), p);
+        } else {
+            shadowedTitles++;
+        }
+        projectsById.put(p.getId(), p);
+    }
+
+    /**
+     * @return the ID that will be assigned to the next project created
+     */
+    public int getNextProjectId() {
+        return nextProjectId.get();
+    }
+
+    /**
+     * Raises the next available project ID. The ID is never lowered, so that
+     * the ID of an existing or removed project is not handed out again.
+     *
+     * @param nextProjectId the new next project ID
+     */
+    public void setNextProjectId(int nextProjectId) {
+        this.nextProjectId.accumulateAndGet(nextProjectId, Math::max);
     }
 
     /**
@@ -44,17 +383,7 @@ public class ProjectsManager {
      * @return {@code true} if the title is unique, otherwise {@code false}
      */
     public boolean isTitleUnique(String title){
-        int index = 0;
-        for(Project p : projects){
-            if(p.getTitle().equals(title)){
-                index = 1;
-                break;
-            }
-        }
-        if(index == 1){
-            return false;
-        }
-        return true;
+        return !projectsByTitle.containsKey(title);
     }
 
     /**
@@ -66,32 +395,110 @@ public class ProjectsManager {
      * @throws TitleNotUniqueException if the title already exists
      */
     public Project addProject(String title, String descr) throws TitleNotUniqueException{
-        Project p = new Project(title, descr, nextProjectId);
-        if(!isTitleUnique(title)){
-            throw new TitleNotUniqueException("Titel är ej unik");
+        Project p;
+        synchronized (this) {
+            if(!isTitleUnique(title)){
+                throw new TitleNotUniqueException("Titel är ej unik");
+            }
+            p = new Project(title, descr, nextProjectId.getAndIncrement(), IClock.toDateTime(clock.millis()));
+            // hold the project until it is reported, so that none of its tasks is reported first
+            p.lock().lock();
+            try {
+                index(p);
+                for (IProjectsListener l : listeners) {
+                    l.projectAdded(p);
+                }
+            } finally {
+                p.lock().unlock();
+            }
         }
-        projects.add(p);
-        nextProjectId++;
         return p;
     }
 
+    /**
+     * Adds a project under the ID and creation time it was given when it was
+     * first added, for example when a journal is replayed. Unlike
+     * {@link #addProject} the title need not be unique: a project whose title is
+     * already taken is kept like the duplicates of old files. The next project
+     * ID is raised past the restored one.
+     *
+     * @param id      the ID of the project
+     * @param title   the title of the project
+     * @param descr   the description of the project
+     * @param created the creation time of the project
+     * @return the restored project, or the project that already has the ID
+     */
+    public Project restoreProject(int id, String title, String descr, LocalDateTime created) {
+        synchronized (this) {
+            Project existing = projectsById.get(id);
+            if (existing != null) {
+                return existing;
+            }
+            setNextProjectId(id + 1);
+            Project p = new Project(title, descr, id, created);
+            p.lock().lock();
+            try {
+                index(p);
+                for (IProjectsListener l : listeners) {
+                    l.projectAdded(p);
+                }
+            } finally {
+                p.lock().unlock();
+            }
+            return p;
+        }
+    }
+
     /**
      * Removes a specific project from the list.
      *
      * @param project the project to remove
      */
     public void removeProject(Project project){
-        projects.remove(project);
+        synchronized (this) {
+            if (!projectsById.remove(project.getId(), project)) {
+                return;
+            }
+            projectList = null;
+            if (projectsByTitle.remove(project.getTitle(), project)) {
+                sortedTitles.remove(project.getTitle());
+                if (shadowedTitles > 0) {
+                    promoteShadowedTitle(project.getTitle());
+                }
+            } else {
+                shadowedTitles--;
+            }
+            project.setManager(null);
+            unloadedProjects.remove(project);
+            projectText.remove(project);
+            for (IProjectsListener l : listeners) {
+                l.projectRemoved(project);
+            }
+        }
     }
 
     /**
-     * Retrieves a project by its ID (index in the list).
+     * Lets a project whose title was shadowed by a removed project take over the title.
+     */
+    private void promoteShadowedTitle(String title) {
+        for (Project p : projectsById.values()) {
+            if (p.getTitle().equals(title)) {
+                projectsByTitle.put(title, p);
+                sortedTitles.put(title, p);
+                shadowedTitles--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Retrieves a project by its ID.
      *
-     * @param id the index of the project in the list
-     * @return the {@link Project} at the given index
+     * @param id the ID of the project
+     * @return the {@link Project} with the given ID, or {@code null} if there is none
      */
     public Project getProjectById(int id){
-        return projects.get(id);
+        return projectsById.get(id);
     }
 
     /**
@@ -102,14 +509,210 @@ public class ProjectsManager {
      */
     public List<Project> findProjects(String titleStr) {
         List<Project> found = new ArrayList<>();
-        for(Project p : projects){
-            if(Objects.equals(p.getTitle(), titleStr)){
-                found.add(p);
+        Project p = projectsByTitle.get(titleStr);
+        if (p != null) {
+            found.add(p);
+        }
+        return found;
+    }
+
+    /**
+     * Finds all projects whose title starts with the given prefix, sorted by title.
+     *
+     * @param prefix the start of the title
+     * @return a list of matching {@link Project} objects
+     */
+    public List<Project> findProjectsByPrefix(String prefix) {
+        List<Project> found = new ArrayList<>();
+        for (Map.Entry<String, Project> e : sortedTitles.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                break;
+            }
+            found.add(e.getValue());
+        }
+        return found;
+    }
+
+    /**
+     * Finds all projects whose title lies in a range, sorted by title.
+     *
+     * @param fromTitle the lowest title, inclusive
+     * @param toTitle   the highest title, exclusive
+     * @return a list of matching {@link Project} objects
+     */
+    public List<Project> findProjectsInRange(String fromTitle, String toTitle) {
+        return new ArrayList<>(sortedTitles.subMap(fromTitle, true, toTitle, false).values());
+    }
+
+    /**
+     * Finds all tasks taken by a person, in all projects.
+     * The project of each task is available from {@link Task#getProject()}.
+     *
+     * @param takenBy the assignee to look for
+     * @return a new list of the tasks taken by the given person
+     */
+    public List<Task> findTasksTakenBy(String takenBy) {
+        loadAllTasks();
+        return assignees.takenBy(takenBy);
+    }
+
+    /**
+     * Counts the tasks taken by a person in all projects.
+     *
+     * @param takenBy the assignee to count
+     * @return the number of tasks taken by the given person
+     */
+    public int countTasksTakenBy(String takenBy) {
+        loadAllTasks();
+        return assignees.count(takenBy);
+    }
+
+    /**
+     * Counts the tasks taken by a person in all projects, per state.
+     * Tasks without a state are not included.
+     *
+     * @param takenBy the assignee to count
+     * @return a new {@link Map} with a count for every {@link TaskState}, including zero counts
+     */
+    public Map<TaskState, Integer> countTasksTakenByState(String takenBy) {
+        loadAllTasks();
+        return assignees.countByState(takenBy);
+    }
+
+    /**
+     * @return the names of everyone who has taken a task in any project, sorted
+     */
+    public Set<String> getAssignees() {
+        loadAllTasks();
+        return assignees.assignees();
+    }
+
+    /**
+     * Applies batches of changes to several projects together.
+     * <p>
+     * Each batch is applied as by {@link Project#apply}, but all of them at once:
+     * the projects are locked in ID order, every batch is checked before any is
+     * applied, all changed and added tasks get the same timestamp, and listeners
+     * such as the journal are told about all batches as one group.
+     * </p>
+     *
+     * @param batches the batches to apply, at most one per project
+     * @throws IllegalArgumentException if a project is not managed by this manager, has more
+     *                                  than one batch, or a batch names a task that is not in
+     *                                  its project; nothing is changed then
+     * @throws IllegalStateException    if a batch has already been applied or assigns a task
+     *                                  that is already taken; nothing is changed then
+     */
+    public void apply(List<TaskBatch> batches) {
+        List<Project> projects = new ArrayList<>(batches.size());
+        for (TaskBatch batch : batches) {
+            projects.add(batch.getProject());
+        }
+        projects.sort(Comparator.comparingInt(Project::getId));
+        int locked = 0;
+        try {
+            for (Project project : projects) {
+                project.lock().lock();
+                locked++;
+                if (projectsById.get(project.getId()) != project) {
+                    throw new IllegalArgumentException("Project " + project.getId() + " is not managed by this manager.");
+                }
+                if (locked > 1 && projects.get(locked - 2) == project) {
+                    throw new IllegalArgumentException("More than one batch for project " + project.getId() + ".");
+                }
+            }
+            for (TaskBatch batch : batches) {
+                batch.getProject().checkBatch(batch);
+            }
+            long now = clock.millis();
+            for (TaskBatch batch : batches) {
+                batch.getProject().applyChecked(batch, now);
+            }
+            fireBatch(batches);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                projects.get(i).lock().unlock();
             }
         }
+    }
+
+    /**
+     * Finds the tasks that match a condition in all projects.
+     * <p>
+     * Large workspaces are matched in parallel on the common fork-join pool, split
+     * by project and, for projects with many tasks that the indexes cannot answer,
+     * by chunks of tasks. Small workspaces are matched on the calling thread.
+     * The project of each task is available from {@link Task#getProject()}.
+     * </p>
+     *
+     * @param matcher the condition the tasks must meet
+     * @return a new list of the matching tasks, in project ID order and then as {@link Project#findTasks}
+     */
+    public List<Task> findTasks(ITaskMatcher matcher) {
+        return ParallelQuery.find(getProjects(), matcher);
+    }
+
+    /**
+     * Counts the tasks that match a condition in all projects, in parallel
+     * like {@link #findTasks}.
+     *
+     * @param matcher the condition the tasks must meet
+     * @return the number of matching tasks
+     */
+    public int countTasks(ITaskMatcher matcher) {
+        return ParallelQuery.count(getProjects(), matcher);
+    }
+
+    /**
+     * Searches project titles and descriptions for words.
+     * <p>
+     * All words of the query must occur, in any order and case; a word ending
+     * with {@code *} matches every word that starts with it, so
+     * {@code "drib* allen"} finds a project described as "Dribbla som Allen Iversson".
+     * </p>
+     *
+     * @param query the words to search for, separated by spaces
+     * @return a new list of the matching projects
+     */
+    public List<Project> searchProjects(String query) {
+        List<Project> found = projectText.search(query);
+        found.sort(Comparator.comparingInt(Project::getId));
         return found;
     }
 
+    /**
+     * Searches the descriptions of the tasks in all projects for words,
+     * with the same query syntax as {@link #searchProjects}.
+     * The project of each task is available from {@link Task#getProject()}.
+     *
+     * @param query the words to search for, separated by spaces
+     * @return a new list of the matching tasks
+     */
+    public List<Task> searchTasks(String query) {
+        loadAllTasks();
+        List<Task> found = taskText.search(query);
+        // other threads may move a task out of its project during the sort, so read each project once
+        Map<Task, Integer> projectIds = new IdentityHashMap<>(found.size() * 2);
+        for (Task t : found) {
+            Project project = t.getProject();
+            projectIds.put(t, project == null ? -1 : project.getId());
+        }
+        found.sort(Comparator.comparingInt((Task t) -> projectIds.get(t)).thenComparingInt(Task::getId));
+        return found;
+    }
+
+    /**
+     * Loads the tasks of all projects that have not been accessed yet, which adds them to the task indexes.
+     */
+    private void loadAllTasks() {
+        if (unloadedProjects.isEmpty()) {
+            return;
+        }
+        for (Project p : new ArrayList<>(unloadedProjects)) {
+            p.index();
+        }
+    }
+
     /**
      * Finds the highest project ID among all stored projects.
      *
@@ -117,33 +720,65 @@ public class ProjectsManager {
      */
     public int getHighestId() {
         int highest = 0;
-        for (Project p : projects) {
-            if (p.getId() > highest) {
-                highest = p.getId();
+        for (int id : projectsById.keySet()) {
+            if (id > highest) {
+                highest = id;
             }
         }
         return highest;
     }
 
     /**
-     * Returns a copy of the list of projects.
+     * Returns the projects in ID order, as an unmodifiable list.
+     * <p>
+     * The list is kept until a project is added or removed, so repeated calls
+     * return the same list without copying.
+     * </p>
      *
-     * @return a new {@link List} containing all projects
+     * @return all projects
      */
     public List<Project> getProjects() {
-        return new ArrayList<>(projects);
+        List<Project> list = projectList;
+        if (list != null) {
+            return list;
+        }
+        synchronized (this) {
+            if (projectList == null) {
+                projectList = List.copyOf(projectsById.values());
+            }
+            return projectList;
+        }
+    }
+
+    /**
+     * Takes a {@link ProjectSnapshot} of every project, for reports and exports that
+     * need a consistent view while other threads keep working.
+     * <p>
+     * Each project is copied at its own point in time, so the returned list
+     * holds a copy of every task until it is released.
+     * </p>
+     *
+     * @return the snapshots of all projects in ID order
+     */
+    public List<ProjectSnapshot> snapshot() {
+        List<Project> projects = getProjects();
+        List<ProjectSnapshot> snapshots = new ArrayList<>(projects.size());
+        for (Project p : projects) {
+            snapshots.add(p.snapshot());
+        }
+        return snapshots;
     }
 
     /**
-     * Returns a copy on the various states of the registered projects.
+     * Returns the number of registered projects in each state.
      *
-     * @return a new {@link List} containing all states.
+     * @return a new {@link Map} with a count for every {@link ProjectState}, including zero counts
      */
-    public List<Project> getState(){
-        List<Project> stateList = new ArrayList<>();
-        for(Project p : projects){
-            //stateList = p.getProjectState();
+    public Map<ProjectState, Integer> getState(){
+        Map<ProjectState, Integer> counts = new EnumMap<>(ProjectState.class);
+        for (ProjectState state : ProjectState.values()) {
+            counts.put(state, stateCounts.get(state.ordinal()));
         }
-        return stateList;
+        return counts;
     }
-}
\ No newline at end of file
+}
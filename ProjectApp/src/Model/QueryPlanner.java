@@ -0,0 +1,136 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans combined task queries from the cardinality statistics of a {@link TaskIndex}.
+ * <p>
+ * A conjunction is driven by the indexed matcher with the smallest estimate; its
+ * candidates are then tested against the remaining matchers, most selective first,
+ * stopping at the first one that fails. A disjunction is answered as the union
+ * of index lookups when every part is indexed. When all parts have bitmaps,
+ * both are answered with bitmap operations instead, smallest bitmap first.
+ * Anything else falls back to testing every task.
+ * </p>
+ */
+final class QueryPlanner {
+
+    private QueryPlanner() {}
+
+    /**
+     * @return the parts ordered by estimated number of matches, unknown estimates last
+     */
+    static ITaskMatcher[] bySelectivity(ITaskMatcher[] parts, TaskIndex index) {
+        Map<ITaskMatcher, Integer> estimates = new IdentityHashMap<>();
+        for (ITaskMatcher part : parts) {
+            int estimate = part.estimate(index);
+            estimates.put(part, estimate < 0 ? Integer.MAX_VALUE : estimate);
+        }
+        ITaskMatcher[] ordered = parts.clone();
+        Arrays.sort(ordered, Comparator.comparingInt(estimates::get));
+        return ordered;
+    }
+
+    /**
+     * @return the bitmaps of all parts, smallest first, or {@code null} if a part has none
+     */
+    static TaskBitmap[] bitmaps(ITaskMatcher[] parts, TaskIndex index) {
+        TaskBitmap[] bitmaps = new TaskBitmap[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            bitmaps[i] = parts[i].bitmap(index);
+            if (bitmaps[i] == null) {
+                return null;
+            }
+        }
+        Arrays.sort(bitmaps, Comparator.comparingInt(TaskBitmap::cardinality));
+        return bitmaps;
+    }
+
+    static TaskBitmap and(TaskBitmap[] bitmaps) {
+        if (bitmaps == null || bitmaps.length == 0) {
+            return null;
+        }
+        TaskBitmap result = bitmaps[0];
+        for (int i = 1; i < bitmaps.length && !result.isEmpty(); i++) {
+            result = result.and(bitmaps[i]);
+        }
+        return result;
+    }
+
+    static TaskBitmap or(TaskBitmap[] bitmaps) {
+        if (bitmaps == null || bitmaps.length == 0) {
+            return null;
+        }
+        TaskBitmap result = bitmaps[0];
+        for (int i = 1; i < bitmaps.length; i++) {
+            result = result.or(bitmaps[i]);
+        }
+        return result;
+    }
+
+    static ArrayList<Task> and(ITaskMatcher[] parts, TaskIndex index) {
+        ITaskMatcher[] ordered = bySelectivity(parts, index);
+        if (ordered.length == 0 || ordered[0].estimate(index) < 0) {
+            return null; // nothing indexed, scan
+        }
+
+        ArrayList<Task> candidates = ordered[0].lookup(index);
+        ArrayList<Task> result = new ArrayList<>(candidates.size());
+        for (Task task : candidates) {
+            if (matchesAll(task, ordered, 1)) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    static boolean matchesAll(Task task, ITaskMatcher[] parts, int from) {
+        for (int i = from; i < parts.length; i++) {
+            if (!parts[i].match(task)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static ArrayList<Task> or(ITaskMatcher[] parts, TaskIndex index) {
+        List<ArrayList<Task>> lookups = new ArrayList<>(parts.length);
+        for (ITaskMatcher part : parts) {
+            if (part.estimate(index) < 0) {
+                return null; // one part needs a scan anyway
+            }
+            lookups.add(part.lookup(index));
+        }
+
+        // merge the id-ordered lists, skipping duplicates
+        ArrayList<Task> result = new ArrayList<>();
+        int[] positions = new int[lookups.size()];
+        while (true) {
+            Task next = null;
+            for (int i = 0; i < lookups.size(); i++) {
+                ArrayList<Task> list = lookups.get(i);
+                if (positions[i] < list.size()) {
+                    Task candidate = list.get(positions[i]);
+                    if (next == null || candidate.getId() < next.getId()) {
+                        next = candidate;
+                    }
+                }
+            }
+            if (next == null) {
+                return result;
+            }
+            result.add(next);
+            for (int i = 0; i < lookups.size(); i++) {
+                ArrayList<Task> list = lookups.get(i);
+                if (positions[i] < list.size() && list.get(positions[i]) == next) {
+                    positions[i]++;
+                }
+            }
+        }
+    }
+}
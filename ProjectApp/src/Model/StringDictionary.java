@@ -0,0 +1,169 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Intern table that stores every distinct string once and gives it an {@code int} code.
+ * <p>
+ * Code 0 stands for {@code null}; other strings get codes 1, 2, 3 and so on in
+ * the order they are first seen. {@link #intern} returns the stored instance of
+ * an equal string, so that objects referring to equal text share one copy. The
+ * dictionary counts how many copies are shared and estimates the heap saved.
+ * </p>
+ * <p>
+ * Interned strings are reference counted: every {@link #intern} must be matched
+ * by a {@link #release} once the caller no longer refers to the string, and a
+ * string is dropped when its last reference is released. Its code is then given
+ * to the next new string. Strings added with {@link #code} alone are kept.
+ * </p>
+ */
+public final class StringDictionary {
+
+    // object header, fields and array header of a String, added to its length
+    private static final int STRING_OVERHEAD = 40;
+
+    private final List<String> strings;
+    private final Map<String, Integer> codes;
+    // the number of interned references to each string, by code
+    private int[] references;
+    // codes of released strings, reused for new ones
+    private final List<Integer> freeCodes;
+    private long duplicates;
+    private long savedBytes;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public StringDictionary() {
+        this.strings = new ArrayList<>();
+        this.strings.add(null);
+        this.codes = new HashMap<>();
+        this.references = new int[16];
+        this.freeCodes = new ArrayList<>();
+    }
+
+    /**
+     * Returns the code of a string, adding the string if it is new.
+     *
+     * @param str the string, may be {@code null}
+     * @return the code of the string, 0 for {@code null}
+     */
+    public int code(String str) {
+        if (str == null) {
+            return 0;
+        }
+        Integer code = codes.get(str);
+        if (code == null) {
+            if (freeCodes.isEmpty()) {
+                code = strings.size();
+                strings.add(str);
+            } else {
+                code = freeCodes.remove(freeCodes.size() - 1);
+                strings.set(code, str);
+            }
+            codes.put(str, code);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of a string without adding it.
+     *
+     * @param str the string, may be {@code null}
+     * @return the code of the string, 0 for {@code null}, or -1 if the string is not in the dictionary
+     */
+    public int find(String str) {
+        if (str == null) {
+            return 0;
+        }
+        Integer code = codes.get(str);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code a code returned by {@link #code}
+     * @return the string with the given code, {@code null} for 0
+     * @throws IndexOutOfBoundsException if no string has the given code
+     */
+    public String get(int code) {
+        return strings.get(code);
+    }
+
+    /**
+     * Returns the stored instance of a string, adding the string if it is new,
+     * and counts a reference to it.
+     *
+     * @param str the string, may be {@code null}
+     * @return an equal string shared by all callers, or {@code null}
+     */
+    public String intern(String str) {
+        if (str == null) {
+            return null;
+        }
+        int code = code(str);
+        if (code >= references.length) {
+            references = Arrays.copyOf(references, Math.max(code + 1, references.length * 2));
+        }
+        if (references[code]++ > 0) {
+            duplicates++;
+            savedBytes += STRING_OVERHEAD + str.length();
+        }
+        return strings.get(code);
+    }
+
+    /**
+     * Gives up a reference obtained from {@link #intern}, dropping the string
+     * once nobody refers to it any more.
+     *
+     * @param str the string, may be {@code null}
+     */
+    public void release(String str) {
+        if (str == null) {
+            return;
+        }
+        Integer code = codes.get(str);
+        if (code == null || code >= references.length || references[code] == 0) {
+            return;
+        }
+        if (--references[code] > 0) {
+            duplicates--;
+            savedBytes -= STRING_OVERHEAD + str.length();
+        } else {
+            codes.remove(str);
+            strings.set(code, null);
+            freeCodes.add(code);
+        }
+    }
+
+    /**
+     * @return the number of distinct strings in the dictionary
+     */
+    public int size() {
+        return strings.size() - 1 - freeCodes.size();
+    }
+
+    /**
+     * @return the number of interned references that share a stored string with another
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return an estimate of the heap saved by sharing strings, in bytes
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "strings=" + size() +
+            ", duplicates=" + duplicates +
+            ", savedBytes=" + savedBytes;
+    }
+}
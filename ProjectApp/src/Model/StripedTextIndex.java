@@ -0,0 +1,104 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link TextIndex} split into stripes that threads can update and search at the same time.
+ * <p>
+ * Every object is indexed in one stripe, chosen by its identity hash code, and
+ * every stripe has its own read-write lock. Threads that index different
+ * objects therefore rarely wait for each other, and a search holds the lock of
+ * one stripe at a time, so it only delays the writers of that stripe.
+ * </p>
+ *
+ * @param <T> the type of the indexed objects
+ */
+final class StripedTextIndex<T> {
+
+    private static final int STRIPES = 16;
+
+    private final List<TextIndex<T>> stripes;
+    private final List<ReadWriteLock> locks;
+
+    StripedTextIndex() {
+        this.stripes = new ArrayList<>(STRIPES);
+        this.locks = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new TextIndex<>());
+            locks.add(new ReentrantReadWriteLock());
+        }
+    }
+
+    private static int stripe(Object doc) {
+        int h = System.identityHashCode(doc);
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Indexes an object under a text, as {@link TextIndex#put}.
+     */
+    void put(T doc, String text) {
+        int i = stripe(doc);
+        Lock lock = locks.get(i).writeLock();
+        lock.lock();
+        try {
+            stripes.get(i).put(doc, text);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an object from the index, as {@link TextIndex#remove}.
+     */
+    void remove(T doc) {
+        int i = stripe(doc);
+        Lock lock = locks.get(i).writeLock();
+        lock.lock();
+        try {
+            stripes.get(i).remove(doc);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            Lock lock = locks.get(i).writeLock();
+            lock.lock();
+            try {
+                stripes.get(i).clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the objects whose text contains all words of a query, as {@link TextIndex#search}.
+     *
+     * @param query words separated by spaces; a word ending with {@code *} is a prefix
+     * @return the matching objects of all stripes, in no particular order
+     */
+    List<T> search(String query) {
+        TextIndex.Query parsed = TextIndex.parse(query);
+        List<T> result = new ArrayList<>();
+        if (parsed.words.isEmpty()) {
+            return result;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            Lock lock = locks.get(i).readLock();
+            lock.lock();
+            try {
+                stripes.get(i).search(parsed, result);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+}
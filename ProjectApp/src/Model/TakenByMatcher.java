@@ -1,5 +1,8 @@
 package Model;
 
+import java.util.ArrayList;
+import java.util.Objects;
+
 public class TakenByMatcher implements ITaskMatcher{
     private String takenBy;
 
@@ -9,6 +12,21 @@ public class TakenByMatcher implements ITaskMatcher{
 
     @Override
     public boolean match(Task task) {
-        return task.getTakenBy().equals(takenBy);
+        return Objects.equals(task.getTakenBy(), takenBy);
+    }
+
+    @Override
+    public ArrayList<Task> lookup(TaskIndex index) {
+        return takenBy == null ? null : index.takenBy(takenBy);
+    }
+
+    @Override
+    public TaskBitmap bitmap(TaskIndex index) {
+        return takenBy == null ? null : index.takenByBitmap(takenBy);
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        return takenBy == null ? -1 : index.countTakenBy(takenBy);
     }
 }
@@ -1,8 +1,16 @@
 package Model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Represents a task within a project or workflow.
@@ -10,7 +18,26 @@ import java.time.LocalDateTime;
  * Each {@code Task} has an ID, description, priority, current state,
  * the person responsible for it, and a timestamp for when it was last updated.
  * The class implements {@link Serializable} to allow persistence
- * and {@link Comparable} to enable sorting by priority (and description as a tie-breaker).
+ * and {@link Comparable} to enable sorting by priority (with description and ID as tie-breakers).
+ * </p>
+ * <p>
+ * The last update is kept in milliseconds since the epoch and taken from the
+ * {@link IClock} of the manager; {@link #getLastUpdated()} converts it for display.
+ * </p>
+ * <p>
+ * The setters hold the lock of the owning {@link Project} while they run, so a
+ * task can be modified from any thread. A task without a project is guarded by
+ * one of a few locks shared by all such tasks, which its project also takes
+ * when it adds or removes the task. Getters do not lock; a value read while
+ * another thread modifies the task may already be out of date.
+ * </p>
+ * <p>
+ * Every change increments the {@linkplain #getVersion() version} of the task.
+ * {@link #tryClaim}, {@link #compareAndSetState} and {@link #compareAndSet} check
+ * and change the task under the same lock, so of several threads racing on a
+ * task exactly one succeeds and the others see {@code false}. A thread can
+ * read a task without locking, decide what to do, and apply its change only if
+ * the task has not changed in between.
  * </p>
  */
 public class Task implements Serializable, Comparable<Task> {
@@ -18,6 +45,38 @@ public class Task implements Serializable, Comparable<Task> {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The serialized form of earlier versions, kept so that old files can be read:
+     * the last update is written as a {@code LocalDateTime}.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("takenBy", String.class),
+            new ObjectStreamField("state", TaskState.class),
+            new ObjectStreamField("lastUpdated", LocalDateTime.class),
+            new ObjectStreamField("prio", TaskPrio.class)
+    };
+
+    /**
+     * Orders tasks with the highest priority first, then by description and ID,
+     * which is the order of {@link Project#topK}.
+     */
+    public static final Comparator<Task> BY_IMPORTANCE =
+            Comparator.comparing(Task::getPrio, Comparator.reverseOrder())
+                    .thenComparing(Task::getDescription, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparingInt(Task::getId);
+
+    /** The locks of the tasks that have no project, chosen by identity hash code. */
+    private static final Lock[] UNOWNED_LOCKS = new Lock[16];
+
+    static {
+        for (int i = 0; i < UNOWNED_LOCKS.length; i++) {
+            UNOWNED_LOCKS[i] = new ReentrantLock();
+        }
+    }
+
     /** A short description of the task. */
     private String description;
 
@@ -30,24 +89,56 @@ public class Task implements Serializable, Comparable<Task> {
     /** The current state of the task (e.g. OPEN, IN_PROGRESS, DONE). */
     private TaskState state;
 
-    /** The last time this task was modified. */
-    private LocalDateTime lastUpdated;
+    /** The last time this task was modified, in milliseconds since the epoch. */
+    private long lastUpdated;
 
     /** The priority level of this task. */
     private TaskPrio prio;
 
+    /** The number of changes made to this task since it was created or loaded. */
+    private transient volatile long version;
+
+    /** The project this task belongs to, notified when the task changes. */
+    private transient volatile Project owner;
+
+    /** Whether this task is an unchangeable copy that belongs to a {@link ProjectSnapshot}. */
+    private transient boolean frozen;
+
+    /** The task read by {@link #readObject}, until {@link #readResolve} replaces this instance. */
+    private transient Task deserialized;
+
     /**
      * Creates a new {@code Task} with a description, priority, and unique ID.
      *
      * @param description the textual description of the task
      * @param prio the task's priority level
      * @param id the unique identifier of the task
+     * @param created the creation time in milliseconds since the epoch
      */
-    Task(String description, TaskPrio prio, int id) {
+    Task(String description, TaskPrio prio, int id, long created) {
         this.description = description;
         this.prio = prio;
         this.id = id;
-        lastUpdated = LocalDateTime.now();
+        lastUpdated = created;
+    }
+
+    /**
+     * Recreates a persisted {@code Task} with all its values.
+     *
+     * @param description the textual description of the task
+     * @param prio the task's priority level
+     * @param id the unique identifier of the task
+     * @param state the state of the task, may be {@code null}
+     * @param takenBy the assignee, may be {@code null}
+     * @param lastUpdated the time of the last modification, in milliseconds since the epoch
+     */
+    Task(String description, TaskPrio prio, int id, TaskState state, String takenBy, long lastUpdated) {
+        this.description = description;
+        this.prio = prio;
+        this.id = id;
+        this.state = state;
+        this.takenBy = takenBy;
+        this.lastUpdated = lastUpdated;
     }
 
     /**
@@ -56,26 +147,106 @@ public class Task implements Serializable, Comparable<Task> {
      * @param description the new description text
      */
     public void setDescription(String description) {
-        this.description = description;
-        setLastUpdated();
+        Lock lock = lockOwner();
+        try {
+            changing(true);
+            storeDescription(description);
+            changed(true);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Assigns this task to a person.
      * <p>
      * This method can only be called once; if the task is already taken,
-     * an {@link IllegalStateException} is thrown.
+     * an {@link IllegalStateException} is thrown. Use {@link #tryClaim} when
+     * several people may take the task at the same time.
      * </p>
      *
      * @param takenBy the name of the person taking the task
      * @throws IllegalStateException if the task is already assigned
      */
     public void setTakenBy(String takenBy) {
-        if (this.takenBy != null) {
+        if (!tryClaim(takenBy)) {
             throw new IllegalStateException("Task already taken.");
         }
-        this.takenBy = takenBy;
-        setLastUpdated();
+    }
+
+    /**
+     * Assigns this task to a person if nobody has taken it yet.
+     * <p>
+     * Checking and assigning happen under the lock of the project, so when
+     * several threads claim the same task only one of them gets it.
+     * </p>
+     *
+     * @param assignee the name of the person taking the task
+     * @return {@code true} if the task is now taken by {@code assignee},
+     *         {@code false} if it was already taken
+     */
+    public boolean tryClaim(String assignee) {
+        Lock lock = lockOwner();
+        try {
+            if (getTakenBy() != null) {
+                return false;
+            }
+            changing(true);
+            storeTakenBy(assignee);
+            changed(true);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the state of the task only if it still has the expected state.
+     *
+     * @param expected the state the task must have, may be {@code null}
+     * @param state the new {@link TaskState} of the task
+     * @return {@code true} if the state was changed, {@code false} if the task
+     *         had another state
+     */
+    public boolean compareAndSetState(TaskState expected, TaskState state) {
+        Lock lock = lockOwner();
+        try {
+            if (getState() != expected) {
+                return false;
+            }
+            setState(state);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a change to the task only if nothing has changed it since its
+     * version was read.
+     * <p>
+     * The update runs under the same lock as the setters and may call any setters
+     * of this task; each of them increments the version. It must not add the
+     * task to a project or change other tasks. If the update throws, the
+     * changes it already made are kept.
+     * </p>
+     *
+     * @param expectedVersion the version returned by {@link #getVersion()} when the task was read
+     * @param update the change to apply
+     * @return {@code true} if the update was applied, {@code false} if the
+     *         version no longer matched
+     */
+    public boolean compareAndSet(long expectedVersion, Consumer<? super Task> update) {
+        Lock lock = lockOwner();
+        try {
+            if (version != expectedVersion) {
+                return false;
+            }
+            update.accept(this);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -84,15 +255,203 @@ public class Task implements Serializable, Comparable<Task> {
      * @param state the new {@link TaskState} of the task
      */
     public void setState(TaskState state) {
-        this.state = state;
-        setLastUpdated();
+        Lock lock = lockOwner();
+        try {
+            changing(false);
+            storeState(state);
+            changed(false);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Updates the {@code lastUpdated} timestamp to the current time.
+     * Updates the {@code lastUpdated} timestamp to the current time of the
+     * manager's clock, or of the system clock if the task has no project.
      */
     public void setLastUpdated() {
-        lastUpdated = LocalDateTime.now();
+        setLastUpdatedMillis(owner != null ? owner.clock().millis() : System.currentTimeMillis());
+    }
+
+    /**
+     * Sets the {@code lastUpdated} timestamp to a given time.
+     * <p>
+     * Intended for restoring persisted tasks; listeners are not notified,
+     * the owning project only updates its last update time.
+     * </p>
+     *
+     * @param lastUpdated the timestamp to restore
+     */
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        setLastUpdatedMillis(IClock.toMillis(lastUpdated));
+    }
+
+    /**
+     * Sets the {@code lastUpdated} timestamp, like {@link #setLastUpdated(LocalDateTime)}.
+     *
+     * @param lastUpdated the timestamp in milliseconds since the epoch
+     */
+    public void setLastUpdatedMillis(long lastUpdated) {
+        Lock lock = lockOwner();
+        try {
+            long previous = getLastUpdatedMillis();
+            storeLastUpdated(lastUpdated);
+            if (owner != null) {
+                owner.taskTouched(this, previous);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the lock of the owning project, so that the change and the updates of
+     * the project indexes happen together. The owner is read again once the lock is
+     * held, in case the task was moved or removed while this thread was waiting.
+     *
+     * @return the lock now held: that of the project, or the
+     *         {@linkplain #unownedLock() unowned lock} if the task has no project
+     * @throws UnsupportedOperationException if this task is a frozen copy
+     */
+    private Lock lockOwner() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Task " + id + " is part of a snapshot");
+        }
+        while (true) {
+            Project project = owner;
+            Lock lock = project != null ? project.lock() : unownedLock();
+            lock.lock();
+            if (project == owner) {
+                return lock;
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the lock that guards this task while it has no project, and its owner
+     */
+    private Lock unownedLock() {
+        int h = System.identityHashCode(this);
+        return UNOWNED_LOCKS[(h ^ (h >>> 16)) & (UNOWNED_LOCKS.length - 1)];
+    }
+
+    /**
+     * Notifies the owning project, if any, that a field is about to change.
+     *
+     * @param strings whether the field is the description or the assignee
+     */
+    private void changing(boolean strings) {
+        if (owner != null) {
+            owner.taskChanging(this, strings);
+        }
+    }
+
+    /**
+     * Refreshes the timestamp and notifies the owning project, if any.
+     *
+     * @param strings whether the changed field is the description or the assignee
+     */
+    private void changed(boolean strings) {
+        setLastUpdated();
+        if (owner != null) {
+            owner.taskUpdated(this, strings);
+        }
+    }
+
+    /**
+     * Writes the description without locking or notifying the project, for
+     * changes that the project applies and reports itself, such as a {@link TaskBatch}.
+     */
+    void storeDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Writes the assignee, like {@link #storeDescription}.
+     */
+    void storeTakenBy(String takenBy) {
+        this.takenBy = takenBy;
+    }
+
+    /**
+     * Writes the state, like {@link #storeDescription}.
+     */
+    void storeState(TaskState state) {
+        this.state = state;
+    }
+
+    /**
+     * Writes the priority, like {@link #storeDescription}.
+     */
+    void storePrio(TaskPrio prio) {
+        this.prio = prio;
+    }
+
+    /**
+     * Writes the timestamp, like {@link #storeDescription}, and increments the version,
+     * which completes a change.
+     */
+    void storeLastUpdated(long lastUpdated) {
+        this.lastUpdated = lastUpdated;
+        version++;
+    }
+
+    /**
+     * Sets the project this task belongs to. Called under the lock of the
+     * project, and takes the unowned lock of the task as well, so the owner
+     * cannot change while a setter of an unowned task runs.
+     *
+     * @param owner the owning project
+     */
+    void setOwner(Project owner) {
+        Lock lock = unownedLock();
+        lock.lock();
+        try {
+            this.owner = owner;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return an unchangeable copy of this task with its current values, including
+     *         the version, and no project
+     */
+    Task frozenCopy() {
+        Task copy = new Task(getDescription(), getPrio(), id, getState(), getTakenBy(), getLastUpdatedMillis());
+        copy.version = version;
+        copy.frozen = true;
+        return copy;
+    }
+
+    /**
+     * Replaces the description and assignee by the equal strings stored in a dictionary,
+     * so that tasks with the same text share one copy.
+     *
+     * @param dictionary the dictionary to intern the strings in
+     */
+    void internStrings(StringDictionary dictionary) {
+        description = dictionary.intern(description);
+        takenBy = dictionary.intern(takenBy);
+    }
+
+    /**
+     * Gives up the references that {@link #internStrings} took, before the
+     * strings change or the task leaves the dictionary's manager.
+     *
+     * @param dictionary the dictionary the strings were interned in
+     */
+    void releaseStrings(StringDictionary dictionary) {
+        dictionary.release(description);
+        dictionary.release(takenBy);
+    }
+
+    /**
+     * @return the project this task belongs to, or {@code null} if it has been removed
+     */
+    public Project getProject() {
+        return owner;
     }
 
     /**
@@ -101,8 +460,14 @@ public class Task implements Serializable, Comparable<Task> {
      * @param prio the new {@link TaskPrio} level
      */
     public void setPrio(TaskPrio prio) {
-        this.prio = prio;
-        setLastUpdated();
+        Lock lock = lockOwner();
+        try {
+            changing(false);
+            storePrio(prio);
+            changed(false);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -134,12 +499,27 @@ public class Task implements Serializable, Comparable<Task> {
     }
 
     /**
-     * @return the timestamp of the most recent modification
+     * @return the timestamp of the most recent modification, in the system time zone
      */
     public LocalDateTime getLastUpdated() {
+        return IClock.toDateTime(getLastUpdatedMillis());
+    }
+
+    /**
+     * @return the time of the most recent modification, in milliseconds since the epoch
+     */
+    public long getLastUpdatedMillis() {
         return lastUpdated;
     }
 
+    /**
+     * @return the number of changes made to this task since it was created or loaded,
+     *         to be passed to {@link #compareAndSet}
+     */
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * @return the {@link TaskPrio} (priority) level of the task
      */
@@ -151,7 +531,8 @@ public class Task implements Serializable, Comparable<Task> {
      * Compares this task to another task, primarily by priority.
      * <p>
      * If both tasks have the same priority, the comparison falls back to
-     * their descriptions alphabetically.
+     * their descriptions alphabetically, with a missing description first,
+     * and then to their IDs, so that only a task compares equal to itself.
      * </p>
      *
      * @param other the other {@code Task} to compare to
@@ -163,19 +544,49 @@ public class Task implements Serializable, Comparable<Task> {
         int result;
         result = this.getPrio().compareTo(other.getPrio());
         if (result == 0) {
-            this.getDescription().compareTo(other.getDescription());
+            result = Comparator.nullsFirst(Comparator.<String>naturalOrder())
+                    .compare(this.getDescription(), other.getDescription());
+        }
+        if (result == 0) {
+            result = Integer.compare(this.getId(), other.getId());
         }
         return result;
     }
 
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("description", getDescription());
+        fields.put("id", id);
+        fields.put("takenBy", getTakenBy());
+        fields.put("state", getState());
+        fields.put("lastUpdated", getLastUpdated());
+        fields.put("prio", getPrio());
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        LocalDateTime updated = (LocalDateTime) fields.get("lastUpdated", null);
+        deserialized = new Task((String) fields.get("description", null), (TaskPrio) fields.get("prio", null),
+                fields.get("id", 0), (TaskState) fields.get("state", null), (String) fields.get("takenBy", null),
+                updated == null ? 0 : IClock.toMillis(updated));
+    }
+
+    @Serial
+    private Object readResolve() {
+        return deserialized;
+    }
+
     @Override
     public String toString() {
         return
-                "description='" + description + '\'' +
+                "description='" + getDescription() + '\'' +
                 ", id=" + id +
-                ", takenBy='" + takenBy + '\'' +
-                ", lastUpdated=" + lastUpdated +
-                ", prio=" + prio +
+                ", takenBy='" + getTakenBy() + '\'' +
+                ", lastUpdated=" + getLastUpdated() +
+                ", prio=" + getPrio() +
                 '}';
     }
 }
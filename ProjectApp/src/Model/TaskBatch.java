@@ -0,0 +1,316 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A list of changes to the tasks of one project that are applied together by
+ * {@link Project#apply} or, for several projects, {@link ProjectsManager#apply}.
+ * <p>
+ * A batch is applied atomically: all operations are checked first, and if one
+ * of them cannot be applied nothing is changed. Other threads see the project
+ * either before or after the whole batch. All changed and added tasks get the
+ * same timestamp, every task is re-indexed once however many operations name
+ * it, and the project and manager aggregates are updated once per batch.
+ * Listeners are told about each affected task once, between
+ * {@link IProjectsListener#batchStarted()} and {@link IProjectsListener#batchFinished()},
+ * so that the journal can write the batch as a single record group.
+ * </p>
+ * <p>
+ * Operations name existing tasks of the project; tasks added by the batch cannot
+ * be changed by the same batch. Their values are checked when they are added to
+ * the batch, so an invalid value is rejected before anything is applied. A batch
+ * can be applied only once.
+ * </p>
+ */
+public final class TaskBatch {
+
+    private enum Kind { ADD, DESCRIPTION, PRIO, STATE, ASSIGN, REMOVE }
+
+    // a change that moves the task in the importance order
+    private static final int REORDERS = 1;
+    // a change of the description or assignee, which are indexed by the manager
+    private static final int STRINGS = 2;
+
+    private static final class Operation {
+        final Kind kind;
+        final Task task;
+        final Object value;
+        final TaskPrio prio;
+
+        Operation(Kind kind, Task task, Object value, TaskPrio prio) {
+            this.kind = kind;
+            this.task = task;
+            this.value = value;
+            this.prio = prio;
+        }
+    }
+
+    private final Project project;
+    private final List<Operation> operations;
+    private boolean applied;
+
+    // the effects of the batch, filled in when it is applied
+    private final List<Task> added;
+    // the changed tasks that stay, with the REORDERS and STRINGS flags of their changes
+    private final Map<Task, Integer> updated;
+    private final Set<Task> removed;
+
+    /**
+     * Creates an empty batch for a project.
+     *
+     * @param project the project whose tasks the batch changes
+     */
+    public TaskBatch(Project project) {
+        if (project == null) {
+            throw new IllegalArgumentException("project must not be null");
+        }
+        this.project = project;
+        this.operations = new ArrayList<>();
+        this.added = new ArrayList<>();
+        this.updated = new LinkedHashMap<>();
+        this.removed = new LinkedHashSet<>();
+    }
+
+    /**
+     * @return the project whose tasks the batch changes
+     */
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return the number of operations in the batch
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Adds a new task, as {@link Project#addTask}.
+     *
+     * @param description the textual description of the task
+     * @param prio        the priority level of the task
+     * @throws IllegalArgumentException if {@code prio} is {@code null}
+     */
+    public void addTask(String description, TaskPrio prio) {
+        add(Kind.ADD, null, description, prio);
+    }
+
+    /**
+     * Changes the description of a task, as {@link Task#setDescription}.
+     *
+     * @param task        a task of the project
+     * @param description the new description text
+     */
+    public void setDescription(Task task, String description) {
+        add(Kind.DESCRIPTION, task, description, null);
+    }
+
+    /**
+     * Changes the priority of a task, as {@link Task#setPrio}.
+     *
+     * @param task a task of the project
+     * @param prio the new priority
+     * @throws IllegalArgumentException if {@code task} or {@code prio} is {@code null}
+     */
+    public void setPrio(Task task, TaskPrio prio) {
+        add(Kind.PRIO, task, null, prio);
+    }
+
+    /**
+     * Changes the state of a task, as {@link Task#setState}.
+     *
+     * @param task  a task of the project
+     * @param state the new state
+     */
+    public void setState(Task task, TaskState state) {
+        add(Kind.STATE, task, state, null);
+    }
+
+    /**
+     * Assigns a task to a person, as {@link Task#setTakenBy}. The batch fails if
+     * the task is already taken when it is applied.
+     *
+     * @param task    a task of the project
+     * @param takenBy the name of the person taking the task
+     * @throws IllegalArgumentException if {@code task} or {@code takenBy} is {@code null}
+     */
+    public void assign(Task task, String takenBy) {
+        add(Kind.ASSIGN, task, takenBy, null);
+    }
+
+    /**
+     * Removes a task, as {@link Project#removeTask}. Later operations of the
+     * batch must not name the task.
+     *
+     * @param task a task of the project
+     */
+    public void removeTask(Task task) {
+        add(Kind.REMOVE, task, null, null);
+    }
+
+    private void add(Kind kind, Task task, Object value, TaskPrio prio) {
+        if (applied) {
+            throw new IllegalStateException("The batch has already been applied.");
+        }
+        if (kind != Kind.ADD && task == null) {
+            throw new IllegalArgumentException("task must not be null");
+        }
+        if ((kind == Kind.ADD || kind == Kind.PRIO) && prio == null) {
+            throw new IllegalArgumentException("prio must not be null");
+        }
+        if (kind == Kind.ASSIGN && value == null) {
+            throw new IllegalArgumentException("takenBy must not be null");
+        }
+        operations.add(new Operation(kind, task, value, prio));
+    }
+
+    /**
+     * @return the tasks added by the batch, in the order they were added; empty until the batch is applied
+     */
+    public List<Task> getAddedTasks() {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * @return whether the batch has been applied
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    /**
+     * Checks that every operation can be applied to the project as it is now.
+     * Called with the lock of the project held, before anything is changed.
+     *
+     * @throws IllegalStateException    if the batch was applied, or a task to assign is already taken
+     * @throws IllegalArgumentException if an operation names a task that is not, or no longer, in the project
+     */
+    void check() {
+        if (applied) {
+            throw new IllegalStateException("The batch has already been applied.");
+        }
+        Set<Task> taken = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Task> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Operation op : operations) {
+            if (op.kind == Kind.ADD) {
+                continue;
+            }
+            if (op.task.getProject() != project || gone.contains(op.task)) {
+                throw new IllegalArgumentException("Task " + op.task.getId() + " is not in project " + project.getId());
+            }
+            if (op.kind == Kind.ASSIGN) {
+                if (op.task.getTakenBy() != null || !taken.add(op.task)) {
+                    throw new IllegalStateException("Task " + op.task.getId() + " already taken.");
+                }
+            } else if (op.kind == Kind.REMOVE) {
+                gone.add(op.task);
+            }
+        }
+    }
+
+    /**
+     * Sorts the named tasks into those that stay and change, and those that are
+     * removed. Called by the project after {@link #check()}.
+     */
+    void classify() {
+        for (Operation op : operations) {
+            switch (op.kind) {
+                case ADD:
+                    break;
+                case REMOVE:
+                    updated.remove(op.task);
+                    removed.add(op.task);
+                    break;
+                case DESCRIPTION:
+                    updated.merge(op.task, REORDERS | STRINGS, (a, b) -> a | b);
+                    break;
+                case PRIO:
+                    updated.merge(op.task, REORDERS, (a, b) -> a | b);
+                    break;
+                case ASSIGN:
+                    updated.merge(op.task, STRINGS, (a, b) -> a | b);
+                    break;
+                default:
+                    updated.putIfAbsent(op.task, 0);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Stores the new field values of the tasks that stay, in the order of the
+     * operations. Called by the project once it has unindexed the tasks.
+     */
+    void storeChanges() {
+        for (Operation op : operations) {
+            if (op.kind == Kind.ADD || op.kind == Kind.REMOVE || removed.contains(op.task)) {
+                continue;
+            }
+            switch (op.kind) {
+                case DESCRIPTION:
+                    op.task.storeDescription((String) op.value);
+                    break;
+                case PRIO:
+                    op.task.storePrio(op.prio);
+                    break;
+                case STATE:
+                    op.task.storeState((TaskState) op.value);
+                    break;
+                case ASSIGN:
+                    op.task.storeTakenBy((String) op.value);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Creates the tasks of the add operations, in order, and records them as added.
+     *
+     * @param create creates and stores a task from its description and priority
+     */
+    void addTasks(BiFunction<String, TaskPrio, Task> create) {
+        for (Operation op : operations) {
+            if (op.kind == Kind.ADD) {
+                added.add(create.apply((String) op.value, op.prio));
+            }
+        }
+    }
+
+    Set<Task> updated() {
+        return updated.keySet();
+    }
+
+    /**
+     * @return whether the batch changes the priority or description of a task, which moves it
+     *         in the {@link Task#BY_IMPORTANCE} order
+     */
+    boolean reorders(Task task) {
+        return (updated.get(task) & REORDERS) != 0;
+    }
+
+    /**
+     * @return whether the batch changes the description or assignee of a task
+     */
+    boolean changesStrings(Task task) {
+        return (updated.get(task) & STRINGS) != 0;
+    }
+
+    Set<Task> removed() {
+        return removed;
+    }
+
+    void markApplied() {
+        applied = true;
+    }
+}
@@ -0,0 +1,523 @@
+package Model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of task IDs, combined with word-level AND, OR and AND-NOT.
+ * <p>
+ * The IDs are split into chunks of 65536 by their upper 16 bits, as in a
+ * Roaring bitmap. Each non-empty chunk is stored in a container of its own:
+ * a sorted array of the lower 16 bits while the chunk holds at most 4096 IDs,
+ * and a fixed bitmap of 1024 {@code long} words when it holds more. A sparse
+ * chunk therefore costs two bytes per ID and a dense one at most 8 KB, and
+ * combining two dense chunks is a loop over their words.
+ * </p>
+ * <p>
+ * The set operations return a new bitmap and leave their operands unchanged.
+ * Only the owning {@link TaskIndex} adds and removes IDs; bitmaps handed out by
+ * an index or a matcher are not changed by their receiver.
+ * </p>
+ */
+public final class TaskBitmap {
+
+    // an array container that grows beyond this is turned into a bitmap container
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+    private static final char[] NO_VALUES = new char[0];
+
+    /**
+     * The IDs of one chunk, by their lower 16 bits. A container that is changed
+     * in place returns itself, or its replacement if it had to change kind.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int n;
+
+        ArrayContainer(char[] values, int n) {
+            this.values = values;
+            this.n = n;
+        }
+
+        @Override
+        int cardinality() {
+            return n;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, n, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            // IDs usually arrive in increasing order, so try the end first
+            int pos = n > 0 && values[n - 1] < low ? -n - 1 : Arrays.binarySearch(values, 0, n, low);
+            if (pos >= 0) {
+                return this;
+            }
+            if (n == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            pos = -pos - 1;
+            if (n == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, n * 2)));
+            }
+            System.arraycopy(values, pos, values, pos + 1, n - pos);
+            values[pos] = low;
+            n++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int pos = Arrays.binarySearch(values, 0, n, low);
+            if (pos >= 0) {
+                System.arraycopy(values, pos + 1, values, pos, n - pos - 1);
+                n--;
+            }
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(n, other.cardinality())];
+            int k = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0, j = 0; i < n && j < o.n; ) {
+                    if (values[i] < o.values[j]) {
+                        i++;
+                    } else if (values[i] > o.values[j]) {
+                        j++;
+                    } else {
+                        result[k++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (other.contains(values[i])) {
+                        result[k++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, k);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            char[] result = new char[n + o.n];
+            int k = 0;
+            int i = 0;
+            int j = 0;
+            while (i < n && j < o.n) {
+                if (values[i] < o.values[j]) {
+                    result[k++] = values[i++];
+                } else if (values[i] > o.values[j]) {
+                    result[k++] = o.values[j++];
+                } else {
+                    result[k++] = values[i++];
+                    j++;
+                }
+            }
+            while (i < n) {
+                result[k++] = values[i++];
+            }
+            while (j < o.n) {
+                result[k++] = o.values[j++];
+            }
+            ArrayContainer union = new ArrayContainer(result, k);
+            return k > ARRAY_MAX ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[n];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (!other.contains(values[i])) {
+                    result[k++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, k);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, n), n);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < n; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < n; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, n);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int n;
+
+        BitmapContainer(long[] words, int n) {
+            this.words = words;
+            this.n = n;
+        }
+
+        @Override
+        int cardinality() {
+            return n;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before | (1L << low);
+            if (before != words[low >>> 6]) {
+                n++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (before != words[low >>> 6]) {
+                n--;
+            }
+            return n <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] o = ((BitmapContainer) other).words;
+            long[] result = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & o[i];
+            }
+            return fromWords(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.n; i++) {
+                    result[o.values[i] >>> 6] |= 1L << o.values[i];
+                }
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] |= o[i];
+                }
+            }
+            return fromWords(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.n; i++) {
+                    result[o.values[i] >>> 6] &= ~(1L << o.values[i]);
+                }
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] &= ~o[i];
+                }
+            }
+            return fromWords(result);
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), n);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[n];
+            int k = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, k);
+        }
+
+        private static Container fromWords(long[] words) {
+            int n = 0;
+            for (long word : words) {
+                n += Long.bitCount(word);
+            }
+            BitmapContainer result = new BitmapContainer(words, n);
+            return n <= ARRAY_MAX ? result.toArray() : result;
+        }
+    }
+
+    // upper 16 bits of the IDs in each container, sorted
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+    private int cardinality;
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public TaskBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private TaskBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+    }
+
+    /**
+     * Adds a task ID.
+     *
+     * @param id a non-negative task ID
+     */
+    void add(int id) {
+        char high = (char) (id >>> 16);
+        int i = find(high);
+        if (i < 0) {
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(containers, i, containers, i + 1, size - i);
+            keys[i] = high;
+            containers[i] = new ArrayContainer(NO_VALUES, 0);
+            size++;
+        }
+        int before = containers[i].cardinality();
+        containers[i] = containers[i].add((char) id);
+        cardinality += containers[i].cardinality() - before;
+    }
+
+    /**
+     * Removes a task ID, if present.
+     *
+     * @param id a task ID
+     */
+    void remove(int id) {
+        int i = find((char) (id >>> 16));
+        if (id < 0 || i < 0) {
+            return;
+        }
+        int before = containers[i].cardinality();
+        containers[i] = containers[i].remove((char) id);
+        cardinality -= before - containers[i].cardinality();
+        if (containers[i].cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        }
+    }
+
+    /**
+     * @return a new bitmap with the same IDs
+     */
+    TaskBitmap copy() {
+        Container[] copied = new Container[Math.max(1, size)];
+        for (int i = 0; i < size; i++) {
+            copied[i] = containers[i].copy();
+        }
+        return new TaskBitmap(Arrays.copyOf(keys, copied.length), copied, size);
+    }
+
+    void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+        cardinality = 0;
+    }
+
+    private int find(char high) {
+        // IDs usually arrive in increasing order, so try the last container first
+        if (size > 0 && keys[size - 1] == high) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    /**
+     * @param id a task ID
+     * @return {@code true} if the ID is in this bitmap
+     */
+    public boolean contains(int id) {
+        int i = id < 0 ? -1 : find((char) (id >>> 16));
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    /**
+     * @return the number of IDs in this bitmap
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * @param other another bitmap
+     * @return a new bitmap of the IDs in both bitmaps
+     */
+    public TaskBitmap and(TaskBitmap other) {
+        int capacity = Math.max(1, Math.min(size, other.size));
+        char[] resultKeys = new char[capacity];
+        Container[] result = new Container[capacity];
+        int k = 0;
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container c = containers[i].and(other.containers[j]);
+                if (c.cardinality() > 0) {
+                    resultKeys[k] = keys[i];
+                    result[k++] = c;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new TaskBitmap(resultKeys, result, k);
+    }
+
+    /**
+     * @param other another bitmap
+     * @return a new bitmap of the IDs in either bitmap
+     */
+    public TaskBitmap or(TaskBitmap other) {
+        int capacity = Math.max(1, size + other.size);
+        char[] resultKeys = new char[capacity];
+        Container[] result = new Container[capacity];
+        int k = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                resultKeys[k] = keys[i];
+                result[k++] = containers[i++].copy();
+            } else if (i == size || keys[i] > other.keys[j]) {
+                resultKeys[k] = other.keys[j];
+                result[k++] = other.containers[j++].copy();
+            } else {
+                resultKeys[k] = keys[i];
+                result[k++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        return new TaskBitmap(resultKeys, result, k);
+    }
+
+    /**
+     * @param other another bitmap
+     * @return a new bitmap of the IDs in this bitmap but not in {@code other}
+     */
+    public TaskBitmap andNot(TaskBitmap other) {
+        int capacity = Math.max(1, size);
+        char[] resultKeys = new char[capacity];
+        Container[] result = new Container[capacity];
+        int k = 0;
+        for (int i = 0, j = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container c = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i].copy();
+            if (c.cardinality() > 0) {
+                resultKeys[k] = keys[i];
+                result[k++] = c;
+            }
+        }
+        return new TaskBitmap(resultKeys, result, k);
+    }
+
+    /**
+     * Passes every ID in this bitmap to an action, in increasing order.
+     *
+     * @param action the action to perform for each ID
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEach(id -> sb.append(sb.length() > 1 ? ", " : "").append(id));
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,219 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Secondary indexes over the tasks of one {@link Project}, by state, priority and assignee.
+ * <p>
+ * The owning project keeps the index up to date: a task is taken out of its
+ * buckets just before one of its fields changes and put back right after, so
+ * the index always reflects the current values. Each bucket is a {@link TaskBitmap}
+ * of task IDs. Queries cost time proportional to the number of tasks returned,
+ * not to the size of the project, and return tasks in ID order like
+ * {@link Project#findTasks}. Matchers combine the buckets with bitmap operations,
+ * see {@link ITaskMatcher#bitmap}.
+ * </p>
+ * <p>
+ * All tasks are also kept in a sorted tree in {@link Task#BY_IMPORTANCE} order,
+ * which answers top-k and paging queries without sorting the project.
+ * </p>
+ */
+public final class TaskIndex {
+
+    private final Map<TaskState, TaskBitmap> byState;
+    // tasks whose state has never been set
+    private final TaskBitmap withoutState;
+    private final Map<TaskPrio, TaskBitmap> byPrio;
+    private final Map<String, TaskBitmap> byTakenBy;
+    private final TaskBitmap all;
+    private final NavigableSet<Task> byImportance;
+    private final TaskTable table;
+
+    TaskIndex(TaskTable table) {
+        this.byState = new EnumMap<>(TaskState.class);
+        for (TaskState state : TaskState.values()) {
+            byState.put(state, new TaskBitmap());
+        }
+        this.withoutState = new TaskBitmap();
+        this.byPrio = new EnumMap<>(TaskPrio.class);
+        for (TaskPrio prio : TaskPrio.values()) {
+            byPrio.put(prio, new TaskBitmap());
+        }
+        this.byTakenBy = new HashMap<>();
+        this.all = new TaskBitmap();
+        this.byImportance = new TreeSet<>(Task.BY_IMPORTANCE);
+        this.table = table;
+    }
+
+    void add(Task task) {
+        byImportance.add(task);
+        all.add(task.getId());
+        addToBuckets(task);
+    }
+
+    /**
+     * Puts a task back into the state, priority and assignee buckets only, after
+     * a change that kept its priority and description and so its place in the
+     * importance order.
+     */
+    void addToBuckets(Task task) {
+        stateBucket(task.getState()).add(task.getId());
+        byPrio.get(task.getPrio()).add(task.getId());
+        if (task.getTakenBy() != null) {
+            byTakenBy.computeIfAbsent(task.getTakenBy(), k -> new TaskBitmap()).add(task.getId());
+        }
+    }
+
+    void remove(Task task) {
+        byImportance.remove(task);
+        all.remove(task.getId());
+        removeFromBuckets(task);
+    }
+
+    /**
+     * Takes a task out of the state, priority and assignee buckets only, see {@link #addToBuckets}.
+     */
+    void removeFromBuckets(Task task) {
+        stateBucket(task.getState()).remove(task.getId());
+        byPrio.get(task.getPrio()).remove(task.getId());
+        if (task.getTakenBy() != null) {
+            TaskBitmap bucket = byTakenBy.get(task.getTakenBy());
+            if (bucket != null) {
+                bucket.remove(task.getId());
+                if (bucket.isEmpty()) {
+                    byTakenBy.remove(task.getTakenBy());
+                }
+            }
+        }
+    }
+
+    private TaskBitmap stateBucket(TaskState state) {
+        return state == null ? withoutState : byState.get(state);
+    }
+
+    /**
+     * @return the IDs of all indexed tasks; must not be modified
+     */
+    public TaskBitmap all() {
+        return all;
+    }
+
+    /**
+     * @param state the state to look for, or {@code null} for tasks without a state
+     * @return the IDs of the tasks in the given state; must not be modified
+     */
+    public TaskBitmap stateBitmap(TaskState state) {
+        return stateBucket(state);
+    }
+
+    /**
+     * @param prio the priority to look for
+     * @return the IDs of the tasks with the given priority; must not be modified
+     */
+    public TaskBitmap prioBitmap(TaskPrio prio) {
+        return byPrio.get(prio);
+    }
+
+    /**
+     * @param takenBy the assignee to look for
+     * @return the IDs of the tasks taken by the given person; must not be modified
+     */
+    public TaskBitmap takenByBitmap(String takenBy) {
+        TaskBitmap bucket = byTakenBy.get(takenBy);
+        return bucket == null ? new TaskBitmap() : bucket;
+    }
+
+    /**
+     * @param ids task IDs, such as the result of a bitmap query
+     * @return the tasks with those IDs, in ID order
+     */
+    public ArrayList<Task> tasks(TaskBitmap ids) {
+        ArrayList<Task> result = new ArrayList<>(ids.cardinality());
+        ids.forEach(id -> result.add(table.get(id)));
+        return result;
+    }
+
+    /**
+     * @param id a task ID
+     * @return the indexed task with that ID, or {@code null} if there is none
+     */
+    public Task task(int id) {
+        return table.get(id);
+    }
+
+    /**
+     * @param state the state to look for, or {@code null} for tasks without a state
+     * @return the tasks in the given state, in ID order
+     */
+    public ArrayList<Task> withState(TaskState state) {
+        return tasks(stateBitmap(state));
+    }
+
+    /**
+     * @param state the state to exclude
+     * @return the tasks in any other state, including tasks without a state, in ID order
+     */
+    public ArrayList<Task> notInState(TaskState state) {
+        return tasks(all.andNot(stateBitmap(state)));
+    }
+
+    /**
+     * @param prio the priority to look for
+     * @return the tasks with the given priority, in ID order
+     */
+    public ArrayList<Task> withPrio(TaskPrio prio) {
+        return tasks(prioBitmap(prio));
+    }
+
+    /**
+     * @param takenBy the assignee to look for
+     * @return the tasks taken by the given person, in ID order
+     */
+    public ArrayList<Task> takenBy(String takenBy) {
+        return tasks(takenByBitmap(takenBy));
+    }
+
+    /**
+     * @return the number of indexed tasks
+     */
+    public int size() {
+        return all.cardinality();
+    }
+
+    /**
+     * @param state the state to count, or {@code null} for tasks without a state
+     * @return the number of tasks in the given state
+     */
+    public int countState(TaskState state) {
+        return stateBucket(state).cardinality();
+    }
+
+    /**
+     * @param prio the priority to count
+     * @return the number of tasks with the given priority
+     */
+    public int countPrio(TaskPrio prio) {
+        return byPrio.get(prio).cardinality();
+    }
+
+    /**
+     * @param takenBy the assignee to count
+     * @return the number of tasks taken by the given person
+     */
+    public int countTakenBy(String takenBy) {
+        TaskBitmap bucket = byTakenBy.get(takenBy);
+        return bucket == null ? 0 : bucket.cardinality();
+    }
+
+    /**
+     * @return the indexed tasks in {@link Task#BY_IMPORTANCE} order; must not be modified
+     */
+    NavigableSet<Task> byImportance() {
+        return byImportance;
+    }
+}
@@ -0,0 +1,135 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The tasks of one {@link Project}, stored in an array indexed by task ID.
+ * <p>
+ * Task IDs are handed out densely from zero by each project, so the ID can be
+ * used directly as array index. That makes lookup, insertion and removal
+ * constant time, and iteration runs in ID order, which is also the order in
+ * which the tasks were added. Removed tasks leave an empty slot.
+ * </p>
+ */
+class TaskTable implements Iterable<Task> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Task[] byId;
+    // one past the highest occupied slot
+    private int end;
+    private int size;
+
+    TaskTable() {
+        this.byId = new Task[INITIAL_CAPACITY];
+        this.end = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Adds a task in the slot of its ID.
+     *
+     * @throws IllegalArgumentException if another task already has the same ID
+     */
+    void add(Task task) {
+        int id = task.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative task id: " + id);
+        }
+        if (id >= byId.length) {
+            byId = Arrays.copyOf(byId, Math.max(id + 1, byId.length * 2));
+        }
+        if (byId[id] != null) {
+            throw new IllegalArgumentException("Task id already in use: " + id);
+        }
+        byId[id] = task;
+        size++;
+        if (id >= end) {
+            end = id + 1;
+        }
+    }
+
+    /**
+     * @return the task with the given ID, or {@code null} if there is none
+     */
+    Task get(int id) {
+        return id >= 0 && id < end ? byId[id] : null;
+    }
+
+    /**
+     * Removes a task if it is the one stored under its ID.
+     *
+     * @return {@code true} if the task was removed
+     */
+    boolean remove(Task task) {
+        int id = task.getId();
+        if (get(id) != task) {
+            return false;
+        }
+        byId[id] = null;
+        size--;
+        while (end > 0 && byId[end - 1] == null) {
+            end--;
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        Arrays.fill(byId, 0, end, null);
+        end = 0;
+        size = 0;
+    }
+
+    /**
+     * @return a new list with all tasks in ID order
+     */
+    ArrayList<Task> toList() {
+        ArrayList<Task> list = new ArrayList<>(size);
+        for (int i = 0; i < end; i++) {
+            if (byId[i] != null) {
+                list.add(byId[i]);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < end && byId[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Task next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                Task task = byId[next];
+                next = advance(next + 1);
+                return task;
+            }
+        };
+    }
+}
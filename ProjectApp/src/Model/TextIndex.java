@@ -0,0 +1,330 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index from words to the objects whose text contains them.
+ * <p>
+ * Every indexed object gets a document number, handed out in increasing order,
+ * and every word has a posting list: the sorted numbers of the documents that
+ * contain it. New documents are therefore appended to their posting lists.
+ * When the text of an object changes it gets a new number and the old one is
+ * left behind as a removed document, skipped by queries; once removed documents
+ * outnumber the live ones, the posting lists are compacted and renumbered.
+ * </p>
+ * <p>
+ * Text is split into words of letters and digits and compared case-insensitively.
+ * A query is a list of words that must all occur (AND); a word ending with
+ * {@code *} matches every word with that prefix. Queries intersect the posting
+ * lists, shortest first, so their cost depends on the lists involved rather
+ * than on the number of indexed objects.
+ * </p>
+ *
+ * @param <T> the type of the indexed objects
+ */
+final class TextIndex<T> {
+
+    private static final int MIN_COMPACT = 1024;
+    private static final int[] NONE = new int[0];
+
+    /**
+     * A growable sorted array of document numbers.
+     */
+    private static final class Postings {
+        int[] ids;
+        int size;
+
+        Postings(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        void append(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private final NavigableMap<String, Postings> terms;
+    private final Map<T, Integer> docNos;
+    private Object[] docs;
+    private String[] texts;
+    // one past the highest document number in use
+    private int end;
+    private int removed;
+
+    TextIndex() {
+        this.terms = new TreeMap<>();
+        this.docNos = new IdentityHashMap<>();
+        this.docs = new Object[16];
+        this.texts = new String[16];
+    }
+
+    /**
+     * Indexes an object under a text, replacing the text it was indexed under before.
+     * Does nothing if the text is unchanged.
+     *
+     * @param doc  the object to index
+     * @param text the text to index it under, may be {@code null}
+     */
+    void put(T doc, String text) {
+        Integer no = docNos.get(doc);
+        if (no != null) {
+            String old = texts[no];
+            if (old == null ? text == null : old.equals(text)) {
+                return;
+            }
+            remove(doc);
+        }
+        if (end == docs.length) {
+            docs = Arrays.copyOf(docs, end * 2);
+            texts = Arrays.copyOf(texts, end * 2);
+        }
+        int id = end++;
+        docs[id] = doc;
+        texts[id] = text;
+        docNos.put(doc, id);
+        for (String word : new HashSet<>(tokenize(text))) {
+            terms.computeIfAbsent(word, k -> new Postings(new int[2], 0)).append(id);
+        }
+    }
+
+    /**
+     * Removes an object from the index.
+     *
+     * @param doc the object to remove
+     */
+    void remove(T doc) {
+        Integer no = docNos.remove(doc);
+        if (no == null) {
+            return;
+        }
+        docs[no] = null;
+        texts[no] = null;
+        removed++;
+        if (removed >= MIN_COMPACT && removed > docNos.size()) {
+            compact();
+        }
+    }
+
+    void clear() {
+        terms.clear();
+        docNos.clear();
+        Arrays.fill(docs, 0, end, null);
+        Arrays.fill(texts, 0, end, null);
+        end = 0;
+        removed = 0;
+    }
+
+    /**
+     * Drops removed documents from all posting lists and numbers the rest densely,
+     * keeping their order.
+     */
+    private void compact() {
+        int[] renumbered = new int[end];
+        int live = 0;
+        for (int i = 0; i < end; i++) {
+            if (docs[i] == null) {
+                renumbered[i] = -1;
+                continue;
+            }
+            renumbered[i] = live;
+            docs[live] = docs[i];
+            texts[live] = texts[i];
+            @SuppressWarnings("unchecked")
+            T doc = (T) docs[live];
+            docNos.put(doc, live);
+            live++;
+        }
+        Arrays.fill(docs, live, end, null);
+        Arrays.fill(texts, live, end, null);
+        end = live;
+        removed = 0;
+
+        Iterator<Postings> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            int n = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int id = renumbered[postings.ids[i]];
+                if (id >= 0) {
+                    postings.ids[n++] = id;
+                }
+            }
+            postings.size = n;
+            if (n == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * A query split into words, for searching several indexes without splitting it again.
+     */
+    static final class Query {
+        final List<String> words;
+        // whether the word at the same position is a prefix
+        final List<Boolean> prefixes;
+
+        Query(List<String> words, List<Boolean> prefixes) {
+            this.words = words;
+            this.prefixes = prefixes;
+        }
+    }
+
+    /**
+     * Splits a query into lower-case words.
+     *
+     * @param query words separated by spaces; a word ending with {@code *} is a prefix
+     * @return the parsed query
+     */
+    static Query parse(String query) {
+        List<String> words = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        for (String part : query.trim().split("\\s+")) {
+            boolean prefix = part.endsWith("*");
+            List<String> partWords = tokenize(prefix ? part.substring(0, part.length() - 1) : part);
+            for (int i = 0; i < partWords.size(); i++) {
+                words.add(partWords.get(i));
+                prefixes.add(prefix && i == partWords.size() - 1);
+            }
+        }
+        return new Query(words, prefixes);
+    }
+
+    /**
+     * Finds the objects whose text contains all words of a query.
+     *
+     * @param query words separated by spaces; a word ending with {@code *} is a prefix
+     * @return the matching objects, in the order they were last indexed;
+     *         empty if the query has no words
+     */
+    List<T> search(String query) {
+        List<T> result = new ArrayList<>();
+        search(parse(query), result);
+        return result;
+    }
+
+    /**
+     * Finds the objects whose text contains all words of a parsed query.
+     *
+     * @param query  the parsed query
+     * @param result the list to add the matching objects to, in the order they were last indexed
+     */
+    void search(Query query, List<? super T> result) {
+        if (query.words.isEmpty()) {
+            return;
+        }
+        List<Postings> lists = new ArrayList<>(query.words.size());
+        for (int i = 0; i < query.words.size(); i++) {
+            String word = query.words.get(i);
+            Postings postings = query.prefixes.get(i) ? withPrefix(word) : terms.get(word);
+            if (postings == null || postings.size == 0) {
+                return;
+            }
+            lists.add(postings);
+        }
+
+        lists.sort(Comparator.comparingInt(p -> p.size));
+        Postings matches = lists.get(0);
+        for (int i = 1; i < lists.size() && matches.size > 0; i++) {
+            matches = intersect(matches, lists.get(i));
+        }
+        for (int i = 0; i < matches.size; i++) {
+            @SuppressWarnings("unchecked")
+            T doc = (T) docs[matches.ids[i]];
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+    }
+
+    /**
+     * Merges the posting lists of all words starting with a prefix.
+     */
+    private Postings withPrefix(String prefix) {
+        Map<String, Postings> matching = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (matching.size() == 1) {
+            return matching.values().iterator().next();
+        }
+        int total = 0;
+        for (Postings postings : matching.values()) {
+            total += postings.size;
+        }
+        int[] ids = new int[total];
+        int n = 0;
+        for (Postings postings : matching.values()) {
+            System.arraycopy(postings.ids, 0, ids, n, postings.size);
+            n += postings.size;
+        }
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return new Postings(ids, distinct);
+    }
+
+    /**
+     * Intersects a short posting list with a longer one, galloping through the longer list.
+     */
+    private static Postings intersect(Postings shorter, Postings longer) {
+        int[] result = shorter.size == 0 ? NONE : new int[shorter.size];
+        int n = 0;
+        int from = 0;
+        for (int i = 0; i < shorter.size && from < longer.size; i++) {
+            int id = shorter.ids[i];
+            int step = 1;
+            int hi = from;
+            while (hi < longer.size && longer.ids[hi] < id) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int pos = Arrays.binarySearch(longer.ids, from, Math.min(hi + 1, longer.size), id);
+            if (pos >= 0) {
+                result[n++] = id;
+                from = pos + 1;
+            } else {
+                from = -pos - 1;
+            }
+        }
+        return new Postings(result, n);
+    }
+
+    /**
+     * Splits a text into lower-case words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -1,37 +1,111 @@
 import Model.Project;
 import Model.ProjectsManager;
+import io.CompressedSnapshot;
+import io.ProjectsExporter;
 import io.ProjectsFileIO;
+import io.ProjectsImporter;
+import io.ProjectsJournal;
+import io.ShardedProjectsStore;
+import io.SnapshotScheduler;
+import io.TransferFormat;
+import io.TransferReport;
+import server.ProjectsServer;
 
 
 import ui.MainUI;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
 
 public class ProjectApp {
 
     private static final String FILE_NAME = "projects.ser";
+    private static final String JOURNAL_NAME = "projects.journal";
+    // when this directory exists, projects are stored one file per project in it
+    private static final String STORE_DIR = "projects";
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 30_000;
+    private static final int SNAPSHOT_GENERATIONS = 3;
+    // set to FAST or SMALL to save the projects block-compressed, e.g. -Dprojects.compression=FAST
+    private static final String COMPRESSION_PROPERTY = "projects.compression";
+
+    // the port to serve the projects on instead of running the menus, or -1
+    private final int serverPort;
+    // the file to export the projects to or import them from instead of running the menus, or null
+    private final Path transferFile;
+    private final TransferFormat transferFormat;
+    private final boolean export;
+
+    public ProjectApp(int serverPort) {
+        this(serverPort, null, null, false);
+    }
+
+    private ProjectApp(int serverPort, Path transferFile, TransferFormat transferFormat, boolean export) {
+        this.serverPort = serverPort;
+        this.transferFile = transferFile;
+        this.transferFormat = transferFormat;
+        this.export = export;
+    }
 
     public void run() throws Exception { // we do not catch all exceptions
 
         File projectsFile = new File(FILE_NAME);
+        File journalFile = new File(JOURNAL_NAME);
+        File storeDir = new File(STORE_DIR);
+        boolean sharded = storeDir.isDirectory();
+        // checked before checkpoints may create the file
+        boolean newFile = !projectsFile.exists();
+        CompressedSnapshot.Level compression = compression();
         ProjectsManager projectsManager = new ProjectsManager();
         boolean couldReadFile = false;
+        ProjectsJournal journal = null;
+        SnapshotScheduler checkpoints = null;
 
         try {
 
-            if (projectsFile.exists()) {
-                List<Project> projects = ProjectsFileIO.deSerializeFromFile(projectsFile);
-                ArrayList<Project> myProjects = new ArrayList<>(projects);
+            if (sharded) {
+                ShardedProjectsStore.load(storeDir, projectsManager);
+                couldReadFile = true;
+            } else if (projectsFile.exists()) {
+                SnapshotScheduler.Loaded loaded = SnapshotScheduler.loadLatest(projectsFile, SNAPSHOT_GENERATIONS);
+                ArrayList<Project> myProjects = new ArrayList<>(loaded.getProjects());
 
                 projectsManager.setProjects(myProjects);
                 couldReadFile = true;
+                if (!loaded.isNewest()) {
+                    keepJournal(loaded, journalFile);
+                }
             }
 
-            MainUI ui = new MainUI(projectsManager);
-            ui.mainLoop();
+            // apply changes made since the last snapshot, then record new ones
+            if (couldReadFile || newFile) {
+                int replayed = ProjectsJournal.replay(journalFile, projectsManager);
+                if (replayed > 0) {
+                    System.out.println("Recovered " + replayed + " changes from journal.");
+                }
+                journal = ProjectsJournal.open(journalFile);
+                projectsManager.addListener(journal);
+                if (!sharded) {
+                    checkpoints = SnapshotScheduler.start(projectsFile, projectsManager, journal,
+                            CHECKPOINT_INTERVAL_MILLIS, SNAPSHOT_GENERATIONS, compression);
+                }
+            }
+
+            if (transferFile != null) {
+                transfer(projectsManager);
+            } else if (serverPort >= 0) {
+                serve(projectsManager);
+            } else {
+                MainUI ui = new MainUI(projectsManager);
+                ui.mainLoop();
+            }
 
         } catch (FileNotFoundException | ClassNotFoundException e) {
             System.out.println("Could not load projects from file, please check the data file.");
@@ -39,16 +113,108 @@ public class ProjectApp {
         }
 
         // run method about to exit - save data
-        if(couldReadFile || !projectsFile.exists()) {
-            List<Project> projectsToSave = projectsManager.getProjects();
-            ProjectsFileIO.serializeToFile(projectsFile, projectsToSave);
+        if(couldReadFile || newFile) {
+            if (sharded) {
+                ShardedProjectsStore.save(storeDir, projectsManager);
+            } else if (checkpoints != null) {
+                checkpoints.close(); // writes the final snapshot, if anything changed
+            } else {
+                List<Project> projectsToSave = projectsManager.getProjects();
+                if (compression != null) {
+                    ProjectsFileIO.serializeToFile(projectsFile, projectsToSave, compression);
+                } else {
+                    ProjectsFileIO.serializeToFile(projectsFile, projectsToSave);
+                }
+            }
+            if (journal != null) {
+                journal.truncate();
+            }
+        }
+        if (journal != null) {
+            projectsManager.removeListener(journal);
+            journal.close();
         }
+        System.out.println("Task texts: " + projectsManager.getDistinctStrings() + " distinct, "
+                + projectsManager.getDuplicateStrings() + " shared, about "
+                + projectsManager.getSavedStringBytes() / 1024 + " KB saved");
         System.out.println("Application exits");
     }
 
-    public static void main(String[] args) throws Exception {
+    /**
+     * @return the compression level set with {@link #COMPRESSION_PROPERTY}, or {@code null} if none is set
+     */
+    private static CompressedSnapshot.Level compression() {
+        String level = System.getProperty(COMPRESSION_PROPERTY);
+        return level == null ? null : CompressedSnapshot.Level.valueOf(level.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Warns that an older snapshot was loaded and moves the journal aside, as it
+     * only holds the changes made after the newest snapshot and would leave out
+     * those made in between.
+     */
+    private static void keepJournal(SnapshotScheduler.Loaded loaded, File journalFile) throws IOException {
+        System.out.println("WARNING: " + FILE_NAME + " could not be read, loaded the older copy "
+                + loaded.getFile().getName() + " instead.");
+        System.out.println("WARNING: Changes made after that copy was saved are missing.");
+        if (journalFile.exists()) {
+            File unreplayed = new File(JOURNAL_NAME + ".unreplayed");
+            Files.move(journalFile.toPath(), unreplayed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("WARNING: The journal was not replayed, it is kept as " + unreplayed.getName() + ".");
+        }
+    }
+
+    /**
+     * Exports the projects to the transfer file or imports the records in it.
+     */
+    private void transfer(ProjectsManager projectsManager) throws IOException {
+        if (export) {
+            TransferReport report = ProjectsExporter.export(projectsManager, transferFile, transferFormat);
+            System.out.println("Exported " + report + " to " + transferFile + ".");
+        } else {
+            TransferReport report = ProjectsImporter.importFrom(transferFile, projectsManager, transferFormat);
+            System.out.println("Imported " + report + " from " + transferFile + ".");
+        }
+    }
 
-        ProjectApp app = new ProjectApp();
+    /**
+     * Serves the projects to other processes until a line is entered.
+     */
+    private void serve(ProjectsManager projectsManager) throws Exception {
+        try (ProjectsServer server = new ProjectsServer(projectsManager, serverPort)) {
+            System.out.println("Serving projects on port " + server.getPort() + ", press Enter to stop.");
+            Scanner scan = new Scanner(System.in);
+            if (scan.hasNextLine()) {
+                scan.nextLine();
+            }
+        }
+    }
+
+    private static TransferFormat transferFormat(String name) {
+        switch (name) {
+            case "csv":
+                return TransferFormat.CSV;
+            case "jsonl":
+                return TransferFormat.JSON_LINES;
+            default:
+                return null;
+        }
+    }
+
+    // start with --server [port] to share the projects over local connections instead of using the menus,
+    // or with --export <file> <csv|jsonl> or --import <file> <csv|jsonl> to transfer them in bulk
+    public static void main(String[] args) throws Exception {
+        ProjectApp app = new ProjectApp(-1);
+        if (args.length > 0 && args[0].equals("--server")) {
+            app = new ProjectApp(args.length > 1 ? Integer.parseInt(args[1]) : ProjectsServer.DEFAULT_PORT);
+        } else if (args.length > 0 && (args[0].equals("--export") || args[0].equals("--import"))) {
+            TransferFormat format = args.length == 3 ? transferFormat(args[2]) : null;
+            if (format == null) {
+                System.out.println("Usage: " + args[0] + " <file> <csv|jsonl>");
+                return;
+            }
+            app = new ProjectApp(-1, Path.of(args[1]), format, args[0].equals("--export"));
+        }
         app.run();
     }
 }
\ No newline at end of file
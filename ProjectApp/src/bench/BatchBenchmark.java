@@ -0,0 +1,166 @@
+package bench;
+
+import Model.Project;
+import Model.ProjectsManager;
+import Model.Task;
+import Model.TaskBatch;
+import Model.TaskPrio;
+import Model.TaskState;
+import Model.TitleNotUniqueException;
+import io.ProjectsJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares changing many tasks one call at a time with changing them in one
+ * {@link TaskBatch}.
+ * <p>
+ * Every round creates two equal projects of {@code tasks} tasks. In one, every
+ * task gets a new state, a third of them a new priority and a tenth of them an
+ * assignee, each through its own setter call. In the other, the same changes
+ * are collected in a batch and applied at once. The time of the calls and the
+ * time to build and apply the batch are printed for each round, followed by
+ * the best round. Optionally every change is also written to a journal in a
+ * temporary file. After each round the two projects must be equal.
+ * </p>
+ * <pre>
+ * java bench.BatchBenchmark [tasks [rounds [journal]]]
+ * </pre>
+ */
+public final class BatchBenchmark {
+
+    private final int tasks;
+    private final boolean journal;
+
+    private BatchBenchmark(int tasks, boolean journal) {
+        this.tasks = tasks;
+        this.journal = journal;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean journal = args.length > 2 && args[2].equals("journal");
+        BatchBenchmark benchmark = new BatchBenchmark(tasks, journal);
+        long bestCalls = Long.MAX_VALUE;
+        long bestBatch = Long.MAX_VALUE;
+        for (int round = 1; round <= rounds; round++) {
+            long[] times = benchmark.run(round);
+            bestCalls = Math.min(bestCalls, times[0]);
+            bestBatch = Math.min(bestBatch, times[1] + times[2]);
+            System.out.printf("round %d: calls %.1f ms, batch build %.1f ms + apply %.1f ms%n",
+                    round, times[0] / 1e6, times[1] / 1e6, times[2] / 1e6);
+        }
+        System.out.printf("best of %d rounds with %d tasks: calls %.1f ms, batch %.1f ms (x%.1f)%n",
+                rounds, tasks, bestCalls / 1e6, bestBatch / 1e6, (double) bestCalls / bestBatch);
+    }
+
+    /**
+     * Runs one round.
+     *
+     * @return the nanoseconds of the calls, of building the batch and of applying it
+     */
+    private long[] run(int round) throws IOException, TitleNotUniqueException {
+        ProjectsManager manager = new ProjectsManager();
+        File journalFile = null;
+        ProjectsJournal projectsJournal = null;
+        if (journal) {
+            journalFile = File.createTempFile("batch", ".journal");
+            projectsJournal = ProjectsJournal.open(journalFile);
+            manager.addListener(projectsJournal);
+        }
+        try {
+            Project byCalls = createProject(manager, "calls");
+            Project byBatch = createProject(manager, "batch");
+
+            Random random = new Random(round);
+            long start = System.nanoTime();
+            for (Task task : byCalls.getTasks()) {
+                change(task, random, null);
+            }
+            long calls = System.nanoTime() - start;
+
+            random = new Random(round);
+            start = System.nanoTime();
+            TaskBatch batch = new TaskBatch(byBatch);
+            for (Task task : byBatch.getTasks()) {
+                change(task, random, batch);
+            }
+            long built = System.nanoTime() - start;
+            start = System.nanoTime();
+            byBatch.apply(batch);
+            long applied = System.nanoTime() - start;
+
+            check(byCalls, byBatch);
+            return new long[] {calls, built, applied};
+        } finally {
+            if (projectsJournal != null) {
+                manager.removeListener(projectsJournal);
+                projectsJournal.close();
+                if (!journalFile.delete()) {
+                    journalFile.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private Project createProject(ProjectsManager manager, String title) throws TitleNotUniqueException {
+        Project project = manager.addProject(title, "batch benchmark");
+        TaskBatch batch = new TaskBatch(project);
+        for (int i = 0; i < tasks; i++) {
+            batch.addTask("task " + i, TaskPrio.values()[i % 3]);
+        }
+        project.apply(batch);
+        return project;
+    }
+
+    /**
+     * Changes a task, through its setters if {@code batch} is {@code null} and in the batch otherwise.
+     */
+    private static void change(Task task, Random random, TaskBatch batch) {
+        TaskState state = TaskState.values()[random.nextInt(3)];
+        TaskPrio prio = random.nextInt(3) == 0 ? TaskPrio.values()[random.nextInt(3)] : null;
+        String assignee = random.nextInt(10) == 0 ? "user" + random.nextInt(20) : null;
+        if (batch == null) {
+            task.setState(state);
+            if (prio != null) {
+                task.setPrio(prio);
+            }
+            if (assignee != null) {
+                task.setTakenBy(assignee);
+            }
+        } else {
+            batch.setState(task, state);
+            if (prio != null) {
+                batch.setPrio(task, prio);
+            }
+            if (assignee != null) {
+                batch.assign(task, assignee);
+            }
+        }
+    }
+
+    /**
+     * Compares the tasks of the two projects.
+     *
+     * @throws IllegalStateException if they differ
+     */
+    private static void check(Project byCalls, Project byBatch) {
+        List<Task> expected = byCalls.getTasks();
+        List<Task> actual = byBatch.getTasks();
+        if (expected.size() != actual.size() || byCalls.getProjectState() != byBatch.getProjectState()) {
+            throw new IllegalStateException("The projects differ");
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Task e = expected.get(i);
+            Task a = actual.get(i);
+            if (e.getId() != a.getId() || e.getState() != a.getState() || e.getPrio() != a.getPrio()
+                    || !String.valueOf(e.getTakenBy()).equals(String.valueOf(a.getTakenBy()))) {
+                throw new IllegalStateException("Task " + e.getId() + " differs");
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package bench;
+
+import Model.Project;
+import Model.ProjectsManager;
+import Model.Task;
+import Model.TaskPrio;
+import Model.TaskState;
+import Model.TitleNotUniqueException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures {@link Task#tryClaim} and {@link Task#compareAndSet} while many
+ * threads race on the same few tasks.
+ * <p>
+ * Every thread repeatedly picks one of {@code hot} tasks at random, tries to
+ * claim it, and then advances its state with a compare-and-set loop: it reads
+ * the version, and retries until no other thread changed the task in between.
+ * The run is repeated with 1, 2, 4 and so on up to {@code threads} threads, once
+ * with tasks of a project and once with tasks removed from their project. The
+ * attempts per second and the retries per update are printed for each. At the
+ * end every task must have been claimed exactly once, and its version must
+ * have grown by exactly the number of updates that succeeded on it.
+ * </p>
+ * <pre>
+ * java bench.ClaimContention [threads [hot [seconds]]]
+ * </pre>
+ */
+public final class ClaimContention {
+
+    private static final TaskState[] STATES = TaskState.values();
+
+    private final int hot;
+    private final long durationNanos;
+
+    private ClaimContention(int hot, double seconds) {
+        this.hot = hot;
+        this.durationNanos = (long) (seconds * 1e9);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int hot = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+        ClaimContention contention = new ClaimContention(hot, seconds);
+        for (boolean owned : new boolean[] {true, false}) {
+            for (int n = 1; n <= threads; n *= 2) {
+                contention.run(n, owned);
+            }
+            if (Integer.bitCount(threads) != 1) {
+                contention.run(threads, owned);
+            }
+        }
+    }
+
+    private void run(int threads, boolean owned) throws Exception {
+        List<Task> tasks = owned ? projectTasks() : unownedTasks();
+        long[] startVersions = new long[hot];
+        for (int i = 0; i < hot; i++) {
+            startVersions[i] = tasks.get(i).getVersion();
+        }
+        AtomicLongArray claims = new AtomicLongArray(hot);
+        AtomicLongArray updates = new AtomicLongArray(hot);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                String name = "user" + t;
+                long seed = t;
+                results.add(pool.submit(() -> race(tasks, name, new Random(seed), claims, updates, start)));
+            }
+            start.countDown();
+        } finally {
+            pool.shutdown();
+        }
+        long attempts = 0;
+        long retries = 0;
+        for (Future<long[]> result : results) {
+            attempts += result.get()[0];
+            retries += result.get()[1];
+        }
+        double seconds = durationNanos / 1e9;
+        System.out.printf("%s, %d threads on %d tasks: %.0f attempts/s, %.3f retries per update%n",
+                owned ? "project tasks" : "unowned tasks", threads, hot, attempts / seconds,
+                (double) retries / Math.max(1, attempts));
+
+        for (int i = 0; i < hot; i++) {
+            Task task = tasks.get(i);
+            if (claims.get(i) != 1 || task.getTakenBy() == null) {
+                throw new IllegalStateException("Task " + i + " was claimed " + claims.get(i) + " times");
+            }
+            // each claim and each state change increments the version once
+            long expected = startVersions[i] + 1 + updates.get(i);
+            if (task.getVersion() != expected) {
+                throw new IllegalStateException("Task " + i + " has version " + task.getVersion()
+                        + ", expected " + expected);
+            }
+        }
+    }
+
+    private List<Task> projectTasks() throws TitleNotUniqueException {
+        ProjectsManager manager = new ProjectsManager();
+        Project project = manager.addProject("contention", "hot tasks");
+        for (int i = 0; i < hot; i++) {
+            project.addTask("hot task " + i, TaskPrio.HIGH);
+        }
+        return project.getTasks();
+    }
+
+    private List<Task> unownedTasks() throws TitleNotUniqueException {
+        List<Task> tasks = projectTasks();
+        for (Task task : tasks) {
+            task.getProject().removeTask(task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Claims and updates random tasks until the time is up.
+     *
+     * @return the number of attempts and the number of retried updates
+     */
+    private long[] race(List<Task> tasks, String name, Random random, AtomicLongArray claims,
+                        AtomicLongArray updates, CountDownLatch start) throws InterruptedException {
+        start.await();
+        long end = System.nanoTime() + durationNanos;
+        long attempts = 0;
+        long retries = 0;
+        while (System.nanoTime() < end) {
+            for (int n = 0; n < 64; n++) {
+                int i = random.nextInt(tasks.size());
+                Task task = tasks.get(i);
+                if (task.tryClaim(name)) {
+                    claims.incrementAndGet(i);
+                }
+                while (true) {
+                    long version = task.getVersion();
+                    TaskState state = task.getState();
+                    TaskState next = STATES[state == null ? 0 : (state.ordinal() + 1) % STATES.length];
+                    if (task.compareAndSet(version, t -> t.setState(next))) {
+                        updates.incrementAndGet(i);
+                        break;
+                    }
+                    retries++;
+                }
+            }
+            attempts += 64;
+        }
+        return new long[] {attempts, retries};
+    }
+}
@@ -0,0 +1,228 @@
+package bench;
+
+import Model.Project;
+import Model.ProjectState;
+import Model.ProjectsManager;
+import Model.Task;
+import Model.TaskPrio;
+import Model.TaskState;
+import Model.TitleNotUniqueException;
+import io.ProjectsJournal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how the task updates of a shared {@link ProjectsManager} scale with
+ * the number of threads, while other threads query the indexes that span all
+ * projects.
+ * <p>
+ * Every writer thread has a project of its own and changes the state, priority,
+ * description and assignee of random tasks in it, as the menus and the server
+ * do. Reader threads meanwhile search task descriptions, look up the tasks of
+ * assignees and read the project state counts. The run is repeated with 1, 2,
+ * 4 and so on up to {@code writers} writer threads, and the updates and
+ * queries per second are printed for each. Optionally every change is also
+ * written to a journal in a temporary file. At the end the manager indexes are
+ * checked against the tasks.
+ * </p>
+ * <pre>
+ * java bench.ManagerStress [writers [readers [seconds [tasks [journal]]]]]
+ * </pre>
+ */
+public final class ManagerStress {
+
+    private static final String[] WORDS = {"plan", "build", "test", "review", "deploy", "fix", "write", "call"};
+
+    private final int readers;
+    private final long durationNanos;
+    private final int tasks;
+    private final boolean journal;
+
+    private ManagerStress(int readers, double seconds, int tasks, boolean journal) {
+        this.readers = readers;
+        this.durationNanos = (long) (seconds * 1e9);
+        this.tasks = tasks;
+        this.journal = journal;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 3;
+        int tasks = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        boolean journal = args.length > 4 && args[4].equals("journal");
+        ManagerStress stress = new ManagerStress(readers, seconds, tasks, journal);
+        for (int threads = 1; threads <= writers; threads *= 2) {
+            stress.run(threads);
+        }
+        if (Integer.bitCount(writers) != 1) {
+            stress.run(writers);
+        }
+    }
+
+    private void run(int writers) throws Exception {
+        ProjectsManager manager = new ProjectsManager();
+        File journalFile = null;
+        ProjectsJournal projectsJournal = null;
+        if (journal) {
+            journalFile = File.createTempFile("stress", ".journal");
+            projectsJournal = ProjectsJournal.open(journalFile);
+            manager.addListener(projectsJournal);
+        }
+        List<Project> projects = new ArrayList<>(writers);
+        for (int w = 0; w < writers; w++) {
+            projects.add(createProject(manager, w));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> updates = new ArrayList<>();
+        List<Future<Long>> queries = new ArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(writers + readers);
+        try {
+            for (int w = 0; w < writers; w++) {
+                Project project = projects.get(w);
+                long seed = w;
+                updates.add(threads.submit(() -> write(project, new Random(seed), start)));
+            }
+            for (int r = 0; r < readers; r++) {
+                long seed = 1000 + r;
+                queries.add(threads.submit(() -> read(manager, new Random(seed), start)));
+            }
+            start.countDown();
+        } finally {
+            threads.shutdown();
+        }
+        long updateCount = sum(updates);
+        long queryCount = sum(queries);
+        double seconds = durationNanos / 1e9;
+        System.out.printf("%d writers, %d readers: %.0f updates/s, %.0f queries/s%n",
+                writers, readers, updateCount / seconds, queryCount / seconds);
+
+        if (projectsJournal != null) {
+            manager.removeListener(projectsJournal);
+            projectsJournal.close();
+            if (!journalFile.delete()) {
+                journalFile.deleteOnExit();
+            }
+        }
+        check(manager);
+    }
+
+    private Project createProject(ProjectsManager manager, int n) throws TitleNotUniqueException {
+        Project project = manager.addProject("stress " + n, "project of writer " + n);
+        Random random = new Random(n);
+        for (int i = 0; i < tasks; i++) {
+            project.addTask(description(random), TaskPrio.values()[random.nextInt(3)]);
+        }
+        return project;
+    }
+
+    /**
+     * Updates random tasks of one project until the time is up.
+     *
+     * @return the number of updates made
+     */
+    private long write(Project project, Random random, CountDownLatch start) throws InterruptedException {
+        List<Task> all = project.getTasks();
+        start.await();
+        long end = System.nanoTime() + durationNanos;
+        long count = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 64; i++) {
+                Task task = all.get(random.nextInt(all.size()));
+                int op = random.nextInt(16);
+                if (op < 7) {
+                    task.setState(TaskState.values()[random.nextInt(3)]);
+                } else if (op < 14) {
+                    task.setPrio(TaskPrio.values()[random.nextInt(3)]);
+                } else if (op == 14) {
+                    task.setDescription(description(random));
+                } else {
+                    task.tryClaim("user" + random.nextInt(20));
+                }
+            }
+            count += 64;
+        }
+        return count;
+    }
+
+    /**
+     * Queries the indexes over all projects until the time is up.
+     *
+     * @return the number of queries made
+     */
+    private long read(ProjectsManager manager, Random random, CountDownLatch start) throws InterruptedException {
+        start.await();
+        long end = System.nanoTime() + durationNanos;
+        long count = 0;
+        while (System.nanoTime() < end) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    manager.searchTasks(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(100));
+                    break;
+                case 1:
+                    manager.countTasksTakenBy("user" + random.nextInt(20));
+                    break;
+                default:
+                    manager.getState();
+                    break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String description(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(100);
+    }
+
+    private static long sum(List<Future<Long>> results) throws Exception {
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        return total;
+    }
+
+    /**
+     * Compares the state counts and the assignee index of the manager with its tasks.
+     *
+     * @throws IllegalStateException if they differ
+     */
+    private static void check(ProjectsManager manager) {
+        Map<ProjectState, Integer> states = new EnumMap<>(ProjectState.class);
+        for (ProjectState state : ProjectState.values()) {
+            states.put(state, 0);
+        }
+        Map<String, Integer> assignees = new HashMap<>();
+        for (Project project : manager.getProjects()) {
+            states.merge(project.getProjectState(), 1, Integer::sum);
+            for (Task task : project.getTasks()) {
+                if (task.getTakenBy() != null) {
+                    assignees.merge(task.getTakenBy(), 1, Integer::sum);
+                }
+            }
+        }
+        if (!states.equals(manager.getState())) {
+            throw new IllegalStateException("State counts " + manager.getState() + ", expected " + states);
+        }
+        for (Map.Entry<String, Integer> e : assignees.entrySet()) {
+            if (manager.countTasksTakenBy(e.getKey()) != e.getValue()) {
+                throw new IllegalStateException("Assignee index is wrong for " + e.getKey());
+            }
+        }
+        if (!assignees.keySet().equals(manager.getAssignees())) {
+            throw new IllegalStateException("Assignees " + manager.getAssignees() + ", expected " + assignees.keySet());
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package io;
+
+import Model.Project;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed container for a list of {@link Project} objects.
+ * <p>
+ * Projects are encoded one by one with {@link ProjectsCodec} and packed into
+ * independent blocks of about {@link #BLOCK_SIZE} bytes, each compressed with
+ * deflate and protected by a CRC32C checksum of its compressed bytes. Because
+ * blocks do not depend on each other they are decompressed in parallel when
+ * read, and a damaged block only loses the projects inside it.
+ * </p>
+ * <p>
+ * Every block starts with a marker and a header that has its own checksum, so
+ * damaged lengths are never trusted: the reader skips to the next marker whose
+ * header is intact and carries on with the following blocks.
+ * </p>
+ * Layout:
+ * <pre>
+ * int    magic ("PMGZ")
+ * short  version
+ * byte   compression level
+ * then per block:
+ *        int block marker, int project count, int raw length,
+ *        int compressed length, int crc32c of the compressed bytes,
+ *        int crc32c of the four header fields, compressed bytes
+ * int    end marker
+ * </pre>
+ * Version 1 files, whose blocks have no marker and no header checksum, can still be read.
+ * The raw content of a block is, per project, an int length followed by the
+ * project encoded with {@link ProjectsCodec#write}.
+ */
+public final class CompressedSnapshot {
+
+    /** The first four bytes of every file in this format. */
+    public static final int MAGIC = 0x504D475A;
+
+    /** The format version written by this class. */
+    public static final short VERSION = 2;
+
+    private static final short VERSION_WITHOUT_HEADER_CHECKSUM = 1;
+    private static final int BLOCK_MARKER = 0x424C4B31;
+    private static final int END_MARKER = 0x454E4431;
+    private static final int HEADER_SIZE = 16;
+    // deflate cannot expand data by more than this factor
+    private static final long MAX_DEFLATE_RATIO = 1032;
+
+    /** Target size of the uncompressed content of a block. */
+    public static final int BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * Trade-off between compression speed and output size.
+     */
+    public enum Level {
+        /** Fastest compression, somewhat larger output. */
+        FAST(Deflater.BEST_SPEED),
+        /** Best compression, slower to write. */
+        SMALL(Deflater.BEST_COMPRESSION);
+
+        private final int deflaterLevel;
+
+        Level(int deflaterLevel) {
+            this.deflaterLevel = deflaterLevel;
+        }
+    }
+
+    /**
+     * The projects read from a compressed snapshot, and the number of blocks that were damaged.
+     */
+    public static class Contents {
+        private final List<Project> projects;
+        private final int damagedBlocks;
+        private final int lostProjects;
+
+        Contents(List<Project> projects, int damagedBlocks, int lostProjects) {
+            this.projects = projects;
+            this.damagedBlocks = damagedBlocks;
+            this.lostProjects = lostProjects;
+        }
+
+        /**
+         * @return the projects of all intact blocks, in their original order
+         */
+        public List<Project> getProjects() {
+            return projects;
+        }
+
+        /**
+         * @return the number of blocks that failed their checksum or could not be decoded
+         */
+        public int getDamagedBlocks() {
+            return damagedBlocks;
+        }
+
+        /**
+         * @return the number of projects lost in damaged blocks, not counting blocks
+         *         whose header was damaged too
+         */
+        public int getLostProjects() {
+            return lostProjects;
+        }
+    }
+
+    private CompressedSnapshot() {}
+
+    /**
+     * Encodes and compresses a list of projects to a stream.
+     *
+     * @param out      the stream to write to, not closed by this method
+     * @param projects the projects to write
+     * @param level    the compression level
+     * @throws IOException if writing fails
+     */
+    public static void write(OutputStream out, List<Project> projects, Level level) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeByte(level.ordinal());
+
+        Deflater deflater = new Deflater(level.deflaterLevel, true);
+        try {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(BLOCK_SIZE + BLOCK_SIZE / 4);
+            DataOutputStream rawData = new DataOutputStream(raw);
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            int count = 0;
+            for (Project p : projects) {
+                encoded.reset();
+                ProjectsCodec.write(encoded, List.of(p));
+                rawData.writeInt(encoded.size());
+                encoded.writeTo(rawData);
+                count++;
+                if (raw.size() >= BLOCK_SIZE) {
+                    writeBlock(data, deflater, raw, count);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                writeBlock(data, deflater, raw, count);
+            }
+        } finally {
+            deflater.end();
+        }
+        data.writeInt(END_MARKER);
+        data.flush();
+    }
+
+    private static void writeBlock(DataOutputStream out, Deflater deflater, ByteArrayOutputStream raw,
+                                   int projectCount) throws IOException {
+        byte[] input = raw.toByteArray();
+        raw.reset();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+        byte[] buffer = new byte[16 * 1024];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        byte[] bytes = compressed.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(projectCount).putInt(input.length).putInt(bytes.length).putInt((int) crc.getValue());
+        crc.reset();
+        crc.update(header.array());
+
+        out.writeInt(BLOCK_MARKER);
+        out.write(header.array());
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a compressed snapshot, decompressing and decoding its blocks in parallel.
+     * Damaged blocks are skipped and counted in the result.
+     *
+     * @param in the stream to read from, not closed by this method
+     * @return the projects of all intact blocks
+     * @throws IOException if reading fails or the stream is not in this format
+     */
+    public static Contents read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Filen har inte det komprimerade projektformatet.");
+        }
+        short version = data.readShort();
+        if (version != VERSION && version != VERSION_WITHOUT_HEADER_CHECKSUM) {
+            throw new IOException("Okänd formatversion: " + version);
+        }
+        data.readByte(); // level, only needed when writing
+
+        List<Block> blocks = new ArrayList<>();
+        int damagedHeaders = version == VERSION
+                ? readBlocks(data, blocks)
+                : readBlocksWithoutHeaderChecksum(data, blocks);
+
+        blocks.parallelStream().forEach(Block::decode);
+
+        List<Project> projects = new ArrayList<>();
+        int damaged = damagedHeaders;
+        int lost = 0;
+        for (Block block : blocks) {
+            if (block.projects == null) {
+                damaged++;
+                lost += block.projectCount;
+            } else {
+                projects.addAll(block.projects);
+            }
+        }
+        return new Contents(projects, damaged, lost);
+    }
+
+    /**
+     * Reads the blocks up to the end marker. A block whose header fails its
+     * checksum cannot be located reliably, so the stream is scanned for the
+     * next block marker that is followed by an intact header.
+     *
+     * @return the number of blocks skipped because their header was damaged
+     */
+    private static int readBlocks(DataInputStream data, List<Block> blocks) throws IOException {
+        int damagedHeaders = 0;
+        boolean skipping = false;
+        byte[] header = new byte[HEADER_SIZE];
+        CRC32C crc = new CRC32C();
+        try {
+            int word = data.readInt();
+            while (word != END_MARKER) {
+                if (word != BLOCK_MARKER) {
+                    if (!skipping) {
+                        // damage between blocks; what follows up to the next marker is lost
+                        skipping = true;
+                        damagedHeaders++;
+                    }
+                    word = (word << 8) | data.readUnsignedByte();
+                    continue;
+                }
+                data.readFully(header);
+                int checksum = data.readInt();
+                crc.reset();
+                crc.update(header);
+                ByteBuffer fields = ByteBuffer.wrap(header);
+                Block block = new Block(fields.getInt());
+                block.rawLength = fields.getInt();
+                int length = fields.getInt();
+                block.checksum = fields.getInt();
+                if ((int) crc.getValue() != checksum || !block.hasValidLengths(length)) {
+                    if (!skipping) {
+                        skipping = true;
+                        damagedHeaders++;
+                    }
+                    word = data.readInt();
+                    continue;
+                }
+                skipping = false;
+                blocks.add(block);
+                block.compressed = readBytes(data, length);
+                if (block.compressed == null) {
+                    break;
+                }
+                word = data.readInt();
+            }
+        } catch (EOFException e) {
+            // truncated file, keep the complete blocks
+        }
+        return damagedHeaders;
+    }
+
+    /**
+     * Reads the blocks of a version 1 stream, which ends at a project count of 0.
+     * A damaged length cannot be detected before it is used, so reading stops
+     * at the first length that cannot be right.
+     *
+     * @return always 0, damage shows as damaged blocks
+     */
+    private static int readBlocksWithoutHeaderChecksum(DataInputStream data, List<Block> blocks) throws IOException {
+        while (true) {
+            int projectCount;
+            try {
+                projectCount = data.readInt();
+            } catch (EOFException e) {
+                break; // truncated file, keep the complete blocks
+            }
+            if (projectCount == 0) {
+                break;
+            }
+            Block block = new Block(projectCount);
+            blocks.add(block);
+            try {
+                block.rawLength = data.readInt();
+                int length = data.readInt();
+                block.checksum = data.readInt();
+                if (!block.hasValidLengths(length)) {
+                    break; // lengths are damaged, later blocks cannot be located
+                }
+                block.compressed = readBytes(data, length);
+                if (block.compressed == null) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the compressed bytes of a block without allocating more than the
+     * stream actually holds.
+     *
+     * @return the bytes, or {@code null} if the stream ends first
+     */
+    private static byte[] readBytes(DataInputStream data, int length) throws IOException {
+        byte[] bytes = data.readNBytes(length);
+        return bytes.length == length ? bytes : null;
+    }
+
+    /**
+     * One block as read from the stream; {@link #projects} stays {@code null} if it is damaged.
+     */
+    private static class Block {
+        final int projectCount;
+        int rawLength;
+        int checksum;
+        byte[] compressed;
+        List<Project> projects;
+
+        Block(int projectCount) {
+            this.projectCount = projectCount;
+        }
+
+        /**
+         * @return whether the project count, the raw length and the given compressed
+         *         length can belong to a block written by this class
+         */
+        boolean hasValidLengths(int length) {
+            return projectCount > 0 && length > 0 && rawLength >= 0
+                    && rawLength <= Math.min(Integer.MAX_VALUE - 8, length * MAX_DEFLATE_RATIO);
+        }
+
+        void decode() {
+            if (compressed == null) {
+                return;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(compressed);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+
+            Inflater inflater = new Inflater(true);
+            try {
+                byte[] raw = new byte[rawLength];
+                inflater.setInput(compressed);
+                int n = 0;
+                while (n < raw.length && !inflater.finished()) {
+                    int read = inflater.inflate(raw, n, raw.length - n);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        return;
+                    }
+                    n += read;
+                }
+                if (n != raw.length) {
+                    return;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(raw);
+                List<Project> decoded = new ArrayList<>(projectCount);
+                for (int i = 0; i < projectCount; i++) {
+                    int length = buffer.getInt();
+                    for (Project p : ProjectsCodec.read(buffer.slice(buffer.position(), length))) {
+                        p.getTasks(); // decode now, on this worker thread
+                        decoded.add(p);
+                    }
+                    buffer.position(buffer.position() + length);
+                }
+                projects = decoded;
+            } catch (DataFormatException | IOException | RuntimeException e) {
+                projects = null;
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
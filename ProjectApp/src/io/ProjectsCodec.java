@@ -0,0 +1,564 @@
+package io;
+
+import Model.IClock;
+import Model.ITaskLoader;
+import Model.Project;
+import Model.ProjectState;
+import Model.StringDictionary;
+import Model.Task;
+import Model.TaskPrio;
+import Model.TaskState;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary format for a list of {@link Project} objects.
+ * <p>
+ * Compared to Java serialization the format contains no class descriptors
+ * and is decoded without reflection. Enums are stored as ordinals, timestamps
+ * as milliseconds and strings once per string table. Integers are written as
+ * variable-length quantities.
+ * </p>
+ * <p>
+ * Version 2 splits the file into a small catalog, holding the fields of every
+ * project, and one task block per project. Reading only decodes the catalog;
+ * each project gets an {@link ITaskLoader} that decodes its block the first
+ * time its tasks are accessed, so load time and memory depend on the number
+ * of projects rather than the number of tasks.
+ * </p>
+ * <p>
+ * Version 3 adds the state and last update of every project to the catalog,
+ * so that both are known before the tasks are loaded.
+ * </p>
+ * <p>
+ * Version 4 adds a shared string table to the catalog with every string used
+ * in more than one project, such as assignees and templated descriptions, so
+ * that these are stored once in the file and decoded into a single instance.
+ * </p>
+ * <p>
+ * Version 5 stores the last update of projects and tasks as the milliseconds
+ * since the epoch that they hold in memory. Earlier versions stored the local
+ * date and time in the system time zone as if it were UTC, which moves the
+ * times in the hour that repeats when daylight saving time ends. The creation
+ * time of a project is a local date and time and is still stored that way.
+ * </p>
+ * Version 5 layout:
+ * <pre>
+ * int    magic ("PMGR")
+ * short  version
+ * int    catalog length in bytes
+ * shared string table
+ * var    project count, then per project:
+ *        var id, string title, string description, varlong created,
+ *        var nextTaskId, var task count, byte project state, varlong last update,
+ *        var block offset, var block length
+ * then the task blocks, offsets relative to the end of the catalog:
+ *        string table, var task count, then per task:
+ *            var id, var description ref, byte prio, byte state,
+ *            var takenBy ref, varlong lastUpdated
+ * </pre>
+ * A string is a var length + 1 (0 meaning {@code null}) followed by UTF-8 bytes;
+ * a string table is a var count followed by strings. A string ref is 0 for
+ * {@code null}, 1 to n for the n shared strings and n + 1 onwards for the
+ * strings of the block; a state of -1 means {@code null}.
+ * Version 4 files, with local last update times, version 3 files, without
+ * shared string table, version 2 files, whose catalog
+ * has no project state and last update, and
+ * version 1 files, with a single string table followed by all projects and
+ * their tasks, can still be read.
+ */
+public final class ProjectsCodec {
+
+    /** The first four bytes of every file in this format. */
+    public static final int MAGIC = 0x504D4752;
+
+    /** The format version written by this class. */
+    public static final short VERSION = 5;
+
+    /** The first version that stores last update times as milliseconds since the epoch. */
+    private static final short MILLIS_VERSION = 5;
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+    private static final ProjectState[] PROJECT_STATES = ProjectState.values();
+    private static final String[] NO_STRINGS = new String[0];
+
+    private ProjectsCodec() {}
+
+    /**
+     * Encodes a list of projects to a stream.
+     * <p>
+     * Every project is written under its own lock, so the saved tasks and
+     * aggregates of a project belong together even while other threads modify
+     * it, without copying its tasks first. The task block of a project whose tasks have not been loaded is copied
+     * from the file the project was read from, without decoding it. Such blocks
+     * refer to the shared strings of that file, so these are written as they
+     * are; the tasks of other files are then loaded and written again.
+     * </p>
+     *
+     * @param out      the stream to write to, not closed by this method
+     * @param projects the projects to encode
+     * @throws IOException if writing fails
+     */
+    public static void write(OutputStream out, List<Project> projects) throws IOException {
+        ByteArrayOutputStream catalogBytes = new ByteArrayOutputStream();
+        DataOutputStream catalog = new DataOutputStream(catalogBytes);
+        ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream blocks = new DataOutputStream(blockBytes);
+
+        String[] kept = keptSharedStrings(projects);
+        StringDictionary shared = kept != null ? dictionary(kept) : sharedStrings(projects);
+        writeVarInt(catalog, shared.size());
+        for (int code = 1; code <= shared.size(); code++) {
+            writeString(catalog, shared.get(code));
+        }
+
+        writeVarInt(catalog, projects.size());
+        try {
+            for (Project p : projects) {
+                p.readLocked(project -> {
+                    try {
+                        writeProject(catalog, blocks, project, kept, shared);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e); // cannot happen when writing to memory
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(catalog.size());
+        catalogBytes.writeTo(data);
+        blockBytes.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Writes the catalog entry and the task block of a project. The caller holds the lock of the project.
+     */
+    private static void writeProject(DataOutputStream catalog, DataOutputStream blocks, Project p,
+                                     String[] kept, StringDictionary shared) throws IOException {
+        // read first, as they load the tasks if the file did not have them
+        ProjectState state = p.getProjectState();
+        long lastUpdated = p.getLastUpdatedMillis();
+        int offset = blocks.size();
+        int taskCount;
+        BlockLoader loader = copyableBlock(p, kept);
+        if (loader != null) {
+            loader.copyTo(blocks);
+            taskCount = loader.taskCount;
+        } else {
+            List<Task> tasks = p.getTasks();
+            writeTaskBlock(blocks, tasks, shared);
+            taskCount = tasks.size();
+        }
+
+        writeVarInt(catalog, p.getId());
+        writeString(catalog, p.getTitle());
+        writeString(catalog, p.getDescription());
+        writeVarLong(catalog, toMillis(p.getCreated()));
+        writeVarInt(catalog, p.getNextTaskId());
+        writeVarInt(catalog, taskCount);
+        catalog.writeByte(state.ordinal());
+        writeVarLong(catalog, lastUpdated);
+        writeVarInt(catalog, offset);
+        writeVarInt(catalog, blocks.size() - offset);
+    }
+
+    /**
+     * @return the loader of a project whose tasks are not loaded and whose block
+     *         is in this version and refers to the {@code kept} shared strings, or {@code null}
+     */
+    private static BlockLoader copyableBlock(Project p, String[] kept) {
+        ITaskLoader loader = p.getTaskLoader();
+        if (kept != null && loader instanceof BlockLoader && ((BlockLoader) loader).shared == kept
+                && ((BlockLoader) loader).version == VERSION) {
+            return (BlockLoader) loader;
+        }
+        return null;
+    }
+
+    /**
+     * @return the shared strings of the file in this version the first project with
+     *         unloaded tasks was read from, or {@code null} if there is no such
+     *         project or the strings are not worth keeping
+     */
+    private static String[] keptSharedStrings(List<Project> projects) {
+        String[] strings = null;
+        int users = 0;
+        for (Project p : projects) {
+            ITaskLoader loader = p.getTaskLoader();
+            if (loader instanceof BlockLoader && ((BlockLoader) loader).version == VERSION) {
+                if (strings == null) {
+                    strings = ((BlockLoader) loader).shared;
+                }
+                if (((BlockLoader) loader).shared == strings) {
+                    users++;
+                }
+            }
+        }
+        // a single project, as in a CompressedSnapshot, would carry all strings of its file
+        if (strings == null || strings.length > 0 && users < 2) {
+            return null;
+        }
+        // a damaged file may repeat a string, which the dictionary would only hold once
+        return dictionary(strings).size() == strings.length ? strings : null;
+    }
+
+    private static StringDictionary dictionary(String[] strings) {
+        StringDictionary dictionary = new StringDictionary();
+        for (String str : strings) {
+            dictionary.code(str);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Collects the strings that occur in the tasks of more than one project.
+     */
+    private static StringDictionary sharedStrings(List<Project> projects) {
+        Map<String, Integer> seenIn = new HashMap<>();
+        StringDictionary shared = new StringDictionary();
+        for (int i = 0; i < projects.size(); i++) {
+            int project = i;
+            projects.get(i).readLocked(p -> {
+                for (Task t : p.getTasks()) {
+                    share(seenIn, shared, t.getDescription(), project);
+                    share(seenIn, shared, t.getTakenBy(), project);
+                }
+            });
+        }
+        return shared;
+    }
+
+    private static void share(Map<String, Integer> seenIn, StringDictionary shared, String str, int project) {
+        if (str == null) {
+            return;
+        }
+        Integer first = seenIn.putIfAbsent(str, project);
+        if (first != null && first != project) {
+            shared.code(str);
+        }
+    }
+
+    private static void writeTaskBlock(DataOutputStream out, List<Task> tasks, StringDictionary shared)
+            throws IOException {
+        StringDictionary local = new StringDictionary();
+        for (Task t : tasks) {
+            ref(shared, local, t.getDescription());
+            ref(shared, local, t.getTakenBy());
+        }
+
+        writeVarInt(out, local.size());
+        for (int code = 1; code <= local.size(); code++) {
+            writeString(out, local.get(code));
+        }
+        writeVarInt(out, tasks.size());
+        for (Task t : tasks) {
+            writeVarInt(out, t.getId());
+            writeVarInt(out, ref(shared, local, t.getDescription()));
+            out.writeByte(t.getPrio().ordinal());
+            out.writeByte(t.getState() == null ? -1 : t.getState().ordinal());
+            writeVarInt(out, ref(shared, local, t.getTakenBy()));
+            writeVarLong(out, t.getLastUpdatedMillis());
+        }
+    }
+
+    /**
+     * Decodes a list of projects from a stream, including the magic number and version.
+     * The stream is read to its end; tasks are decoded lazily from the bytes read.
+     *
+     * @param in the stream to read from, not closed by this method
+     * @return the decoded projects
+     * @throws IOException if reading fails or the stream is not in this format
+     */
+    public static List<Project> read(InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    /**
+     * Decodes a list of projects from a buffer, typically a memory-mapped file.
+     * <p>
+     * From version 2 on only the catalog is decoded; the buffer is kept by the task
+     * loaders of the returned projects and must stay unchanged until all tasks
+     * have been loaded.
+     * </p>
+     *
+     * @param buffer the buffer to read from, starting at its position
+     * @return the decoded projects
+     * @throws IOException if the buffer is not in this format
+     */
+    public static List<Project> read(ByteBuffer buffer) throws IOException {
+        try {
+            ByteBuffer data = buffer.slice();
+            if (data.getInt() != MAGIC) {
+                throw new IOException("Filen har inte projektformatet.");
+            }
+            short version = data.getShort();
+            switch (version) {
+                case 1:
+                    return readVersion1(data);
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                    return readCatalog(data, version);
+                default:
+                    throw new IOException("Okänd formatversion: " + version);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Filen är trunkerad eller skadad.", e);
+        }
+    }
+
+    private static List<Project> readVersion1(ByteBuffer data) throws IOException {
+        String[] table = new String[readVarInt(data)];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = readUtf8(data, readVarInt(data));
+        }
+
+        int projectCount = readVarInt(data);
+        List<Project> projects = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            int id = readVarInt(data);
+            String title = string(NO_STRINGS, table, readVarInt(data));
+            String description = string(NO_STRINGS, table, readVarInt(data));
+            LocalDateTime created = fromMillis(readVarLong(data));
+            int nextTaskId = readVarInt(data);
+            Project project = Project.restore(title, description, id, created, nextTaskId);
+            readTasks(data, NO_STRINGS, table, project, (short) 1);
+            projects.add(project);
+        }
+        return projects;
+    }
+
+    private static List<Project> readCatalog(ByteBuffer data, short version) throws IOException {
+        int catalogLength = data.getInt();
+        ByteBuffer catalog = data.slice(data.position(), catalogLength);
+        ByteBuffer blocks = data.slice(data.position() + catalogLength,
+                data.limit() - data.position() - catalogLength);
+
+        String[] shared = NO_STRINGS;
+        if (version >= 4) {
+            shared = new String[readVarInt(catalog)];
+            for (int i = 0; i < shared.length; i++) {
+                shared[i] = readString(catalog);
+            }
+        }
+
+        int projectCount = readVarInt(catalog);
+        List<Project> projects = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            int id = readVarInt(catalog);
+            String title = readString(catalog);
+            String description = readString(catalog);
+            LocalDateTime created = fromMillis(readVarLong(catalog));
+            int nextTaskId = readVarInt(catalog);
+            int taskCount = readVarInt(catalog);
+            ProjectState state = null;
+            long lastUpdated = 0;
+            if (version >= 3) {
+                state = PROJECT_STATES[catalog.get()];
+                lastUpdated = readLastUpdated(catalog, version);
+            }
+            int offset = readVarInt(catalog);
+            int length = readVarInt(catalog);
+            if (offset < 0 || length < 0 || offset + length > blocks.limit()) {
+                throw new IOException("Ogiltigt uppgiftsblock för projekt " + id);
+            }
+
+            Project project = Project.restore(title, description, id, created, nextTaskId);
+            if (taskCount > 0) {
+                BlockLoader loader = new BlockLoader(blocks.slice(offset, length), shared, taskCount, version);
+                if (state != null) {
+                    project.setTaskLoader(loader, state, lastUpdated);
+                } else {
+                    project.setTaskLoader(loader);
+                }
+            }
+            projects.add(project);
+        }
+        return projects;
+    }
+
+    /**
+     * Decodes one task block when the tasks of its project are first accessed.
+     */
+    private static class BlockLoader implements ITaskLoader {
+        private final ByteBuffer block;
+        private final String[] shared;
+        private final int taskCount;
+        private final short version;
+
+        BlockLoader(ByteBuffer block, String[] shared, int taskCount, short version) {
+            this.block = block;
+            this.shared = shared;
+            this.taskCount = taskCount;
+            this.version = version;
+        }
+
+        @Override
+        public int taskCount() {
+            return taskCount;
+        }
+
+        /**
+         * Writes the block as it is, still referring to the shared strings it was read with.
+         */
+        void copyTo(OutputStream out) throws IOException {
+            ByteBuffer data = block.duplicate();
+            byte[] buffer = new byte[Math.min(data.remaining(), 1 << 16)];
+            while (data.hasRemaining()) {
+                int length = Math.min(data.remaining(), buffer.length);
+                data.get(buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        }
+
+        @Override
+        public void loadTasks(Project project) {
+            try {
+                ByteBuffer data = block.duplicate();
+                String[] table = new String[readVarInt(data)];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = readString(data);
+                }
+                readTasks(data, shared, table, project, version);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new UncheckedIOException(
+                        new IOException("Uppgiftsblocket för projekt " + project.getId() + " är skadat.", e));
+            }
+        }
+    }
+
+    private static void readTasks(ByteBuffer data, String[] shared, String[] table, Project project,
+                                  short version) throws IOException {
+        int taskCount = readVarInt(data);
+        for (int j = 0; j < taskCount; j++) {
+            int taskId = readVarInt(data);
+            String taskDescription = string(shared, table, readVarInt(data));
+            TaskPrio prio = PRIOS[data.get()];
+            byte state = data.get();
+            String takenBy = string(shared, table, readVarInt(data));
+            long lastUpdated = readLastUpdated(data, version);
+            project.restoreTask(taskId, taskDescription, prio,
+                    state < 0 ? null : STATES[state], takenBy, lastUpdated);
+        }
+    }
+
+    private static int ref(StringDictionary shared, StringDictionary local, String str) {
+        int code = shared.find(str);
+        return code >= 0 ? code : shared.size() + local.code(str);
+    }
+
+    private static String string(String[] shared, String[] table, int ref) throws IOException {
+        if (ref == 0) {
+            return null;
+        }
+        if (ref <= shared.length) {
+            return shared[ref - 1];
+        }
+        if (ref - shared.length > table.length) {
+            throw new IOException("Ogiltig strängreferens: " + ref);
+        }
+        return table[ref - shared.length - 1];
+    }
+
+    private static void writeString(DataOutput out, String str) throws IOException {
+        if (str == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in);
+        return length == 0 ? null : readUtf8(in, length - 1);
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        if (in.hasArray()) {
+            String str = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return str;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a last update time, which versions before {@link #MILLIS_VERSION} stored as a local date and time.
+     */
+    private static long readLastUpdated(ByteBuffer in, short version) throws IOException {
+        long millis = readVarLong(in);
+        return version >= MILLIS_VERSION ? millis : IClock.toMillis(fromMillis(millis));
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Felaktigt kodat heltal.");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Felaktigt kodat heltal.");
+    }
+}
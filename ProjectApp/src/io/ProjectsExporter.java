@@ -0,0 +1,78 @@
+package io;
+
+import Model.Project;
+import Model.ProjectSnapshot;
+import Model.ProjectsManager;
+import Model.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams all projects and tasks of a {@link ProjectsManager} to a text file.
+ * <p>
+ * Records are written one at a time through a buffered writer on a file channel,
+ * so the memory used does not grow with the size of the output.
+ * Each project record is followed by the records of its tasks, taken from a
+ * {@link Project#snapshot() snapshot} of the project so that they are consistent.
+ * </p>
+ */
+public final class ProjectsExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ProjectsExporter() {}
+
+    /**
+     * Exports all projects and tasks, replacing the file if it exists.
+     *
+     * @param manager the manager to export
+     * @param file    the file to write
+     * @param format  the text format to use
+     * @return the number of records written and the throughput
+     * @throws IOException if writing fails
+     */
+    public static TransferReport export(ProjectsManager manager, Path file, TransferFormat format)
+            throws IOException {
+        long start = System.nanoTime();
+        long projectCount = 0;
+        long taskCount = 0;
+        String[] record = new String[TransferFormat.FIELD_COUNT];
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            format.writeHeader(out);
+            for (Project live : manager.getProjects()) {
+                ProjectSnapshot p = live.snapshot();
+                record[TransferFormat.FIELD_TYPE] = TransferFormat.PROJECT;
+                record[TransferFormat.FIELD_PROJECT] = p.getTitle();
+                record[TransferFormat.FIELD_DESCRIPTION] = p.getDescription();
+                record[TransferFormat.FIELD_PRIO] = null;
+                record[TransferFormat.FIELD_STATE] = null;
+                record[TransferFormat.FIELD_TAKEN_BY] = null;
+                record[TransferFormat.FIELD_LAST_UPDATED] = p.getCreated().toString();
+                format.write(out, record);
+                projectCount++;
+
+                record[TransferFormat.FIELD_TYPE] = TransferFormat.TASK;
+                for (Task t : p.getTasks()) {
+                    record[TransferFormat.FIELD_DESCRIPTION] = t.getDescription();
+                    record[TransferFormat.FIELD_PRIO] = t.getPrio().name();
+                    record[TransferFormat.FIELD_STATE] = t.getState() == null ? null : t.getState().name();
+                    record[TransferFormat.FIELD_TAKEN_BY] = t.getTakenBy();
+                    record[TransferFormat.FIELD_LAST_UPDATED] = t.getLastUpdated().toString();
+                    format.write(out, record);
+                    taskCount++;
+                }
+            }
+        }
+        return new TransferReport(projectCount, taskCount, System.nanoTime() - start);
+    }
+}
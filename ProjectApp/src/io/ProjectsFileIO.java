@@ -2,24 +2,113 @@ package io;
 
 import Model.Project;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ProjectsFileIO {
 
+    /** The first four bytes of a file written with Java serialization. */
+    private static final int SERIALIZATION_MAGIC = 0xACED0005;
+
     private ProjectsFileIO() {} //
 
+    /**
+     * Writes the projects to a file in the binary {@link ProjectsCodec} format.
+     * <p>
+     * The data is written with {@link #writeAtomically}, so an interrupted save never
+     * corrupts the previous file, and projects whose tasks are still mapped from
+     * the old file keep a valid mapping.
+     * </p>
+     *
+     * @param file     the file to write
+     * @param projects the projects to save, {@code null} is saved as an empty list
+     * @throws IOException if writing fails
+     */
     public static void serializeToFile(File file, List<Project> projects) throws IOException {
         if (projects == null) {
             projects = new ArrayList<>();
         }
 
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-            out.writeObject(projects);
+        List<Project> toSave = projects;
+        writeAtomically(file.toPath(), out -> ProjectsCodec.write(out, toSave));
+    }
+
+    /**
+     * Writes the projects to a file in the block-compressed {@link CompressedSnapshot} format.
+     * Like {@link #serializeToFile(File, List)}, the previous file is replaced atomically.
+     *
+     * @param file     the file to write
+     * @param projects the projects to save, {@code null} is saved as an empty list
+     * @param level    the compression level
+     * @throws IOException if writing fails
+     */
+    public static void serializeToFile(File file, List<Project> projects, CompressedSnapshot.Level level)
+            throws IOException {
+        List<Project> toSave = projects == null ? new ArrayList<>() : projects;
+        writeAtomically(file.toPath(), out -> CompressedSnapshot.write(out, toSave, level));
+    }
+
+    /**
+     * Writes a file crash-safely: the content goes to a temporary sibling, is forced
+     * to the storage device and then atomically renamed over {@code target}. A crash
+     * at any point leaves either the old or the new file, never a partial one.
+     *
+     * @param target the file to replace
+     * @param writer writes the new content
+     * @throws IOException if writing, syncing or renaming fails
+     */
+    static void writeAtomically(Path target, StreamWriter writer) throws IOException {
+        target = target.toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile())) {
+            BufferedOutputStream out = new BufferedOutputStream(fileOut, 1 << 16);
+            writer.write(out);
+            out.flush();
+            fileOut.getChannel().force(true);
         }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.getParent());
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Forces a directory entry change, such as a rename, to the storage device
+     * where the platform supports it.
+     */
+    static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on all platforms, the rename itself is still atomic
+        }
+    }
+
+    /**
+     * Writes the content of a file to a stream.
+     */
+    interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the projects from a file written by either {@code serializeToFile} method,
+     * or from a legacy file written with Java serialization. Projects in damaged
+     * blocks of a compressed file are skipped with a warning.
+     * <p>
+     * The file is memory-mapped and only the project catalog is decoded; the
+     * tasks of each project are decoded on first access.
+     * </p>
+     *
+     * @param file the file to read
+     * @return the projects in the file, or an empty list if the file is missing or empty
+     * @throws IOException if reading fails or the file has an unknown format
+     * @throws ClassNotFoundException if a legacy file refers to an unknown class
+     */
     public static List<Project> deSerializeFromFile(File file)
             throws IOException, ClassNotFoundException {
 
@@ -28,6 +117,33 @@ public class ProjectsFileIO {
             return new ArrayList<>();
         }
 
+        int magic;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            magic = in.readInt();
+        }
+
+        if (magic == SERIALIZATION_MAGIC) {
+            return deSerializeLegacy(file);
+        }
+        if (magic == CompressedSnapshot.MAGIC) {
+            try (InputStream in = new FileInputStream(file)) {
+                CompressedSnapshot.Contents contents = CompressedSnapshot.read(in);
+                if (contents.getDamagedBlocks() > 0) {
+                    System.err.println("Varning: " + contents.getDamagedBlocks() + " skadade block i " + file
+                            + ", " + contents.getLostProjects() + " projekt kunde inte läsas.");
+                }
+                return contents.getProjects();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return ProjectsCodec.read(buffer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Project> deSerializeLegacy(File file)
+            throws IOException, ClassNotFoundException {
         try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
             Object obj = in.readObject();
 
@@ -0,0 +1,145 @@
+package io;
+
+import Model.Project;
+import Model.ProjectsManager;
+import Model.Task;
+import Model.TaskPrio;
+import Model.TaskState;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams projects and tasks from a text file into a {@link ProjectsManager}.
+ * <p>
+ * Records are parsed into a fixed number of reused buffers and applied in batches
+ * through {@link ProjectsManager#addProject} and {@link Project#addTask}, so the
+ * memory used by the import itself does not grow with the size of the input.
+ * A project record whose title already exists adds its tasks to that project.
+ * </p>
+ */
+public final class ProjectsImporter {
+
+    /** Default number of records parsed before they are applied. */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ProjectsImporter() {}
+
+    /**
+     * Imports all records of a file with {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param file    the file to read
+     * @param manager the manager to import into
+     * @param format  the text format of the file
+     * @return the number of records imported and the throughput
+     * @throws IOException if reading fails or a record is invalid
+     */
+    public static TransferReport importFrom(Path file, ProjectsManager manager, TransferFormat format)
+            throws IOException {
+        return importFrom(file, manager, format, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Imports all records of a file.
+     *
+     * @param file      the file to read
+     * @param manager   the manager to import into
+     * @param format    the text format of the file
+     * @param batchSize the number of records parsed before they are applied
+     * @return the number of records imported and the throughput
+     * @throws IOException if reading fails or a record is invalid
+     */
+    public static TransferReport importFrom(Path file, ProjectsManager manager, TransferFormat format,
+                                            int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        long start = System.nanoTime();
+        String[][] batch = new String[batchSize][TransferFormat.FIELD_COUNT];
+        Map<String, Project> byTitle = new HashMap<>();
+        long[] counts = new long[2];
+        long line = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader in = new BufferedReader(
+                     Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            format.skipHeader(in);
+            int size = 0;
+            while (format.read(in, batch[size]) != null) {
+                size++;
+                if (size == batchSize) {
+                    applyBatch(batch, size, manager, byTitle, counts, line);
+                    line += size;
+                    size = 0;
+                }
+            }
+            applyBatch(batch, size, manager, byTitle, counts, line);
+        }
+        return new TransferReport(counts[0], counts[1], System.nanoTime() - start);
+    }
+
+    private static void applyBatch(String[][] batch, int size, ProjectsManager manager,
+                                   Map<String, Project> byTitle, long[] counts, long firstRecord)
+            throws IOException {
+        for (int i = 0; i < size; i++) {
+            String[] record = batch[i];
+            try {
+                if (TransferFormat.PROJECT.equals(record[TransferFormat.FIELD_TYPE])) {
+                    project(record[TransferFormat.FIELD_PROJECT], record[TransferFormat.FIELD_DESCRIPTION],
+                            manager, byTitle);
+                    counts[0]++;
+                } else if (TransferFormat.TASK.equals(record[TransferFormat.FIELD_TYPE])) {
+                    addTask(record, project(record[TransferFormat.FIELD_PROJECT], null, manager, byTitle));
+                    counts[1]++;
+                } else {
+                    throw new IllegalArgumentException("okänd posttyp " + record[TransferFormat.FIELD_TYPE]);
+                }
+            } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+                throw new IOException("Ogiltig post " + (firstRecord + i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static Project project(String title, String description, ProjectsManager manager,
+                                   Map<String, Project> byTitle) {
+        if (title == null) {
+            throw new IllegalArgumentException("projekttitel saknas");
+        }
+        Project project = byTitle.get(title);
+        if (project == null) {
+            List<Project> existing = manager.findProjects(title);
+            project = existing.isEmpty() ? manager.addProject(title, description) : existing.get(0);
+            byTitle.put(title, project);
+        }
+        return project;
+    }
+
+    private static void addTask(String[] record, Project project) {
+        String prio = record[TransferFormat.FIELD_PRIO];
+        Task task = project.addTask(record[TransferFormat.FIELD_DESCRIPTION],
+                prio == null ? TaskPrio.MEDIUM : TaskPrio.valueOf(prio));
+        String state = record[TransferFormat.FIELD_STATE];
+        if (state != null) {
+            task.setState(TaskState.valueOf(state));
+        }
+        String takenBy = record[TransferFormat.FIELD_TAKEN_BY];
+        if (takenBy != null) {
+            task.setTakenBy(takenBy);
+        }
+        String lastUpdated = record[TransferFormat.FIELD_LAST_UPDATED];
+        if (lastUpdated != null) {
+            task.setLastUpdated(LocalDateTime.parse(lastUpdated));
+        }
+    }
+}
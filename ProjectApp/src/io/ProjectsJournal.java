@@ -0,0 +1,643 @@
+package io;
+
+import Model.IClock;
+import Model.IProjectsListener;
+import Model.Project;
+import Model.ProjectsManager;
+import Model.Task;
+import Model.TaskPrio;
+import Model.TaskState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of changes made to a {@link ProjectsManager}.
+ * <p>
+ * Registered as a listener on the manager, the journal appends one small record
+ * per mutation instead of rewriting the whole snapshot. Every record is handed
+ * to the operating system immediately, so it survives a crash of the application;
+ * records are forced to the storage device in groups of {@code syncEvery}, and
+ * on {@link #sync()} and {@link #close()}.
+ * </p>
+ * <p>
+ * On startup, {@link #replay(File, ProjectsManager)} applies the journal on top
+ * of the last snapshot. Projects are restored under their journaled ID and
+ * creation time, records that already took effect in the snapshot are skipped,
+ * and the records of a project that the journal removes later on are not
+ * applied at all. Replaying is therefore idempotent, so a journal that was not
+ * truncated after a successful snapshot can safely be replayed again.
+ * </p>
+ * <p>
+ * A background checkpoint takes a {@link #mark()} before it captures the
+ * projects and calls {@link #discardBefore} once the snapshot is in place, so
+ * the journal only holds the records the newest snapshot may be missing.
+ * </p>
+ * <p>
+ * Records may be appended from several threads; each record is written whole.
+ * A thread encodes and checksums its records in its own buffer, so the journal
+ * is only locked while a finished record is handed to the operating system.
+ * The changes of one project are called in under that project's lock, so their
+ * records are in the order the changes were made.
+ * </p>
+ * <p>
+ * The records of a {@link Model.TaskBatch} are collected for the thread that
+ * reports them and appended as the payload of a single batch record, which is
+ * then forced to the device. Its checksum covers the whole batch, so after a
+ * crash a batch is either replayed completely or not at all.
+ * </p>
+ * Record layout: {@code int length, int crc32, byte type, payload}. The high
+ * four bits of the type are the format of the payload, so a journal that still
+ * holds records of an earlier format can be replayed after an upgrade. Format 1
+ * wrote strings with {@link DataOutput#writeUTF}, which is limited to 65535
+ * bytes; format 2 writes them as an int length and UTF-8 bytes. Formats 1 and 2
+ * wrote the last update of a task as a local date and time, which is ambiguous
+ * in the hour that repeats when daylight saving time ends; format 3 writes the
+ * milliseconds since the epoch that the task holds.
+ */
+public class ProjectsJournal implements IProjectsListener, Closeable {
+
+    private static final byte PROJECT_ADDED = 1;
+    private static final byte PROJECT_REMOVED = 2;
+    private static final byte TASK_ADDED = 3;
+    private static final byte TASK_REMOVED = 4;
+    private static final byte TASK_UPDATED = 5;
+    private static final byte BATCH = 6;
+
+    // the format of the records written, in the high bits of their type
+    private static final int FORMAT = 3;
+    // the first format that writes strings as a length and UTF-8 bytes
+    private static final int LONG_STRINGS = 2;
+    // the first format that writes task times as milliseconds since the epoch
+    private static final int MILLIS = 3;
+
+    /** Default number of records written between two forced syncs. */
+    public static final int DEFAULT_SYNC_EVERY = 32;
+
+    private final Path file;
+    // reopened when the records in a snapshot are discarded
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    // the number of bytes discarded from the start of the file, which marks are relative to
+    private long discarded;
+    private final int syncEvery;
+    private int unsynced;
+    private final ThreadLocal<Encoder> encoders;
+
+    /**
+     * The buffers in which one thread encodes its records before they are appended.
+     */
+    private static final class Encoder {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final CRC32 crc = new CRC32();
+        // the records of the batch the thread is reporting, or null outside a batch
+        PendingBatch batch;
+
+        /**
+         * @return the stream to write the next record to: the batch being reported,
+         *         or the emptied record buffer
+         */
+        DataOutputStream nextRecord() {
+            if (batch != null) {
+                return batch.out;
+            }
+            bytes.reset();
+            return out;
+        }
+
+        int checksum(byte[] record) {
+            crc.reset();
+            crc.update(record);
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * The payload of a batch record: the records of the batch, one after the other.
+     */
+    private static final class PendingBatch {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BATCH_BUFFER_SIZE);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        int records;
+
+        PendingBatch() throws IOException {
+            out.writeByte(BATCH);
+        }
+    }
+
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+
+    private ProjectsJournal(File file, int syncEvery) throws IOException {
+        this.file = file.toPath().toAbsolutePath();
+        this.fileOut = new FileOutputStream(file, true);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        this.syncEvery = syncEvery;
+        this.unsynced = 0;
+        this.encoders = ThreadLocal.withInitial(Encoder::new);
+    }
+
+    /**
+     * Opens a journal for appending, creating the file if it does not exist.
+     *
+     * @param file      the journal file
+     * @param syncEvery the number of records between two forced syncs, at least 1
+     * @return the opened journal
+     * @throws IOException if the file could not be opened
+     */
+    public static ProjectsJournal open(File file, int syncEvery) throws IOException {
+        if (syncEvery < 1) {
+            throw new IllegalArgumentException("syncEvery must be at least 1");
+        }
+        return new ProjectsJournal(file, syncEvery);
+    }
+
+    /**
+     * Opens a journal for appending with {@link #DEFAULT_SYNC_EVERY}.
+     *
+     * @param file the journal file
+     * @return the opened journal
+     * @throws IOException if the file could not be opened
+     */
+    public static ProjectsJournal open(File file) throws IOException {
+        return open(file, DEFAULT_SYNC_EVERY);
+    }
+
+    @Override
+    public void projectAdded(Project project) {
+        Encoder encoder = encoders.get();
+        try {
+            DataOutputStream record = encoder.nextRecord();
+            record.writeByte(type(PROJECT_ADDED));
+            record.writeInt(project.getId());
+            writeNullableString(record, project.getTitle());
+            writeNullableString(record, project.getDescription());
+            writeTime(record, project.getCreated());
+            append(encoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void projectRemoved(Project project) {
+        Encoder encoder = encoders.get();
+        try {
+            DataOutputStream record = encoder.nextRecord();
+            record.writeByte(type(PROJECT_REMOVED));
+            record.writeInt(project.getId());
+            append(encoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void taskAdded(Project project, Task task) {
+        Encoder encoder = encoders.get();
+        try {
+            DataOutputStream record = encoder.nextRecord();
+            record.writeByte(type(TASK_ADDED));
+            record.writeInt(project.getId());
+            record.writeInt(task.getId());
+            writeNullableString(record, task.getDescription());
+            record.writeByte(task.getPrio().ordinal());
+            record.writeLong(task.getLastUpdatedMillis());
+            append(encoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void taskRemoved(Project project, Task task) {
+        Encoder encoder = encoders.get();
+        try {
+            DataOutputStream record = encoder.nextRecord();
+            record.writeByte(type(TASK_REMOVED));
+            record.writeInt(project.getId());
+            record.writeInt(task.getId());
+            append(encoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void taskUpdated(Project project, Task task) {
+        Encoder encoder = encoders.get();
+        try {
+            DataOutputStream record = encoder.nextRecord();
+            record.writeByte(type(TASK_UPDATED));
+            record.writeInt(project.getId());
+            record.writeInt(task.getId());
+            writeNullableString(record, task.getDescription());
+            record.writeByte(task.getPrio().ordinal());
+            record.writeByte(task.getState() == null ? -1 : task.getState().ordinal());
+            writeNullableString(record, task.getTakenBy());
+            record.writeLong(task.getLastUpdatedMillis());
+            append(encoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void batchStarted() {
+        try {
+            encoders.get().batch = new PendingBatch();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void batchFinished() {
+        Encoder encoder = encoders.get();
+        PendingBatch pending = encoder.batch;
+        encoder.batch = null;
+        if (pending == null || pending.records == 0) {
+            return;
+        }
+        try {
+            byte[] bytes = pending.bytes.toByteArray();
+            write(bytes, encoder.checksum(bytes), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the record just written to {@link Encoder#nextRecord()} to the file,
+     * or counts it if it belongs to a batch.
+     */
+    private void append(Encoder encoder) throws IOException {
+        if (encoder.batch != null) {
+            encoder.batch.records++;
+            return;
+        }
+        byte[] bytes = encoder.bytes.toByteArray();
+        write(bytes, encoder.checksum(bytes), false);
+    }
+
+    /**
+     * Frames a record with its length and checksum and hands it to the operating
+     * system, forcing it to the device if asked to or once {@code syncEvery}
+     * records are waiting.
+     */
+    private synchronized void write(byte[] bytes, int checksum, boolean force) throws IOException {
+        out.writeInt(bytes.length);
+        out.writeInt(checksum);
+        out.write(bytes);
+        out.flush();
+        unsynced++;
+        if (force || unsynced >= syncEvery) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces all appended records to the storage device.
+     *
+     * @throws IOException if the sync fails
+     */
+    public synchronized void sync() throws IOException {
+        out.flush();
+        fileOut.getChannel().force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Discards all records, typically right after a full snapshot has been written.
+     *
+     * @throws IOException if the file could not be truncated
+     */
+    public synchronized void truncate() throws IOException {
+        out.flush();
+        discarded += fileOut.getChannel().size();
+        fileOut.getChannel().truncate(0);
+        sync();
+    }
+
+    /**
+     * Marks the end of the records appended so far. Taken before a snapshot is
+     * captured, every record before the mark describes a change the snapshot
+     * contains, so they can be dropped with {@link #discardBefore} once the
+     * snapshot is safely written.
+     *
+     * @return the mark
+     * @throws IOException if the position cannot be determined
+     */
+    public synchronized long mark() throws IOException {
+        out.flush();
+        return discarded + fileOut.getChannel().size();
+    }
+
+    /**
+     * Discards the records before a mark and keeps the ones appended after it.
+     * The remaining records are written to a new file that atomically replaces
+     * the journal, so a crash leaves either the old or the new journal.
+     *
+     * @param mark a mark taken with {@link #mark()}
+     * @throws IOException if the journal cannot be rewritten
+     */
+    public synchronized void discardBefore(long mark) throws IOException {
+        out.flush();
+        FileChannel channel = fileOut.getChannel();
+        long start = mark - discarded;
+        long size = channel.size();
+        if (start <= 0 || start > size) {
+            // nothing to discard, or the journal was truncated since the mark
+            return;
+        }
+        byte[] rest = new byte[(int) (size - start)];
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(rest);
+            while (buffer.hasRemaining() && in.read(buffer, start + buffer.position()) >= 0) {
+                // read until the buffer is full
+            }
+        }
+        out.close();
+        ProjectsFileIO.writeAtomically(file, o -> o.write(rest));
+        fileOut = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        discarded += start;
+        unsynced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+    }
+
+    /**
+     * Applies all complete records of a journal file to a manager.
+     * <p>
+     * Reading stops at the first truncated or corrupt record, which is what a
+     * crash in the middle of an append leaves behind. The records of projects
+     * that a later record removes are skipped. The manager should not have a
+     * journal registered as listener while replaying.
+     * </p>
+     *
+     * @param file    the journal file
+     * @param manager the manager holding the last snapshot
+     * @return the number of records applied
+     * @throws IOException if the file could not be read
+     */
+    public static int replay(File file, ProjectsManager manager) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return 0;
+        }
+
+        // the projects the journal removes; their earlier records are skipped
+        Set<Integer> removed = new HashSet<>();
+        readRecords(file, in -> {
+            byte type = in.readByte();
+            int projectId = in.readInt();
+            if (kind(type) == PROJECT_REMOVED) {
+                removed.add(projectId);
+            }
+            skipPayload(type, in);
+        });
+
+        int[] applied = {0};
+        readRecords(file, in -> {
+            if (apply(in, manager, removed)) {
+                applied[0]++;
+            }
+        });
+        return applied[0];
+    }
+
+    private interface RecordReader {
+        void read(DataInputStream record) throws IOException;
+    }
+
+    /**
+     * Reads the complete records of a journal file in order, the records inside
+     * a batch one by one, and stops at the first truncated or corrupt record.
+     */
+    private static void readRecords(File file, RecordReader reader) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] bytes;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > file.length()) {
+                        break;
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    crc.reset();
+                    crc.update(bytes);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                if (bytes[0] == BATCH) {
+                    record.readByte();
+                    while (record.available() > 0) {
+                        reader.read(record);
+                    }
+                } else {
+                    reader.read(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads past the rest of a record whose type and project ID have been read.
+     */
+    private static void skipPayload(byte type, DataInputStream in) throws IOException {
+        int format = format(type);
+        switch (kind(type)) {
+            case PROJECT_ADDED:
+                readTitle(in, format);
+                readNullableString(in, format);
+                if (in.available() > 0) {
+                    readTime(in);
+                }
+                break;
+            case PROJECT_REMOVED:
+                break;
+            case TASK_ADDED:
+                in.readInt();
+                readNullableString(in, format);
+                in.readByte();
+                readMillis(in, format);
+                break;
+            case TASK_REMOVED:
+                in.readInt();
+                break;
+            case TASK_UPDATED:
+                in.readInt();
+                readNullableString(in, format);
+                in.readByte();
+                in.readByte();
+                readNullableString(in, format);
+                readMillis(in, format);
+                break;
+            default:
+                throw new IOException("Okänd journalpost: " + type);
+        }
+    }
+
+    /**
+     * @return whether the record was applied, rather than skipped because its project is removed later
+     */
+    private static boolean apply(DataInputStream in, ProjectsManager manager, Set<Integer> removed) throws IOException {
+        byte type = in.readByte();
+        int format = format(type);
+        int projectId = in.readInt();
+        if (kind(type) != PROJECT_REMOVED && removed.contains(projectId)) {
+            // the project is removed further on; keep its ID from being handed out again
+            skipPayload(type, in);
+            manager.setNextProjectId(projectId + 1);
+            return false;
+        }
+        Project project = manager.getProjectById(projectId);
+
+        switch (kind(type)) {
+            case PROJECT_ADDED: {
+                String title = readTitle(in, format);
+                String descr = readNullableString(in, format);
+                // journals written before the creation time was recorded end here
+                LocalDateTime created = in.available() > 0
+                        ? readTime(in) : IClock.toDateTime(manager.getClock().millis());
+                manager.restoreProject(projectId, title, descr, created);
+                break;
+            }
+            case PROJECT_REMOVED:
+                if (project != null) {
+                    manager.removeProject(project);
+                }
+                manager.setNextProjectId(projectId + 1);
+                break;
+            case TASK_ADDED: {
+                int taskId = in.readInt();
+                String descr = readNullableString(in, format);
+                TaskPrio prio = TaskPrio.values()[in.readByte()];
+                long time = readMillis(in, format);
+                if (project != null && project.getTaskById(taskId) == null
+                        && taskId >= project.getNextTaskId()) {
+                    project.setNextTaskId(taskId);
+                    project.addTask(descr, prio).setLastUpdatedMillis(time);
+                }
+                break;
+            }
+            case TASK_REMOVED: {
+                Task task = project == null ? null : project.getTaskById(in.readInt());
+                if (task != null) {
+                    project.removeTask(task);
+                }
+                break;
+            }
+            case TASK_UPDATED: {
+                Task task = project == null ? null : project.getTaskById(in.readInt());
+                String descr = readNullableString(in, format);
+                TaskPrio prio = TaskPrio.values()[in.readByte()];
+                byte state = in.readByte();
+                String takenBy = readNullableString(in, format);
+                long time = readMillis(in, format);
+                if (task != null) {
+                    task.setDescription(descr);
+                    task.setPrio(prio);
+                    task.setState(state < 0 ? null : TaskState.values()[state]);
+                    if (takenBy != null && task.getTakenBy() == null) {
+                        task.setTakenBy(takenBy);
+                    }
+                    task.setLastUpdatedMillis(time);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Okänd journalpost: " + type);
+        }
+        return true;
+    }
+
+    private static int type(byte kind) {
+        return FORMAT << 4 | kind;
+    }
+
+    private static byte kind(byte type) {
+        return (byte) (type & 0x0F);
+    }
+
+    /**
+     * @return the format a record was written in; records from before formats were numbered are format 1
+     */
+    private static int format(byte type) {
+        return Math.max(1, (type & 0xF0) >>> 4);
+    }
+
+    /**
+     * Writes a string of any length as its UTF-8 byte count, or -1 for {@code null}, and the bytes.
+     */
+    private static void writeNullableString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readNullableString(DataInputStream in, int format) throws IOException {
+        if (format < LONG_STRINGS) {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new EOFException("String of " + length + " bytes in a shorter record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a project title, which format 1 wrote without a null marker.
+     */
+    private static String readTitle(DataInputStream in, int format) throws IOException {
+        return format < LONG_STRINGS ? in.readUTF() : readNullableString(in, format);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads the last update of a task, which formats before {@link #MILLIS} wrote as a local date and time.
+     */
+    private static long readMillis(DataInputStream in, int format) throws IOException {
+        return format < MILLIS ? IClock.toMillis(readTime(in)) : in.readLong();
+    }
+}
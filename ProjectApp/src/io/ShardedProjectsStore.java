@@ -0,0 +1,142 @@
+package io;
+
+import Model.Project;
+import Model.ProjectsManager;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the projects of a {@link ProjectsManager} in a directory, one file per project.
+ * <p>
+ * Each project is written to {@code project-<id>.pm} in the {@link ProjectsCodec}
+ * format, and a small {@code manifest.pm} holds the manager's next project ID.
+ * Loading reads and decodes the shards in parallel on the common fork-join pool.
+ * Saving only rewrites projects that are dirty or have no shard yet, and deletes
+ * the shards of removed projects. Every file is replaced atomically.
+ * </p>
+ */
+public final class ShardedProjectsStore {
+
+    private static final String MANIFEST_NAME = "manifest.pm";
+    private static final String SHARD_PREFIX = "project-";
+    private static final String SHARD_SUFFIX = ".pm";
+    private static final int MANIFEST_MAGIC = 0x504D4D46;
+    private static final short MANIFEST_VERSION = 1;
+
+    private ShardedProjectsStore() {}
+
+    /**
+     * Loads all shards in a directory into a manager, replacing its projects.
+     *
+     * @param dir     the store directory
+     * @param manager the manager to load into
+     * @throws IOException if the manifest or a shard could not be read
+     */
+    public static void load(File dir, ProjectsManager manager) throws IOException {
+        List<Path> shards = listShards(dir.toPath());
+
+        List<Project> projects;
+        try {
+            projects = shards.parallelStream()
+                    .map(ShardedProjectsStore::readShard)
+                    .flatMap(List::stream)
+                    .sorted(Comparator.comparingInt(Project::getId))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        manager.setProjects(projects);
+        int nextProjectId = readManifest(dir.toPath());
+        if (nextProjectId > manager.getNextProjectId()) {
+            manager.setNextProjectId(nextProjectId);
+        }
+    }
+
+    /**
+     * Saves a manager to a directory, creating it if needed. Only changed projects are written.
+     *
+     * @param dir     the store directory
+     * @param manager the manager to save
+     * @return the number of project shards written
+     * @throws IOException if a file could not be written or deleted
+     */
+    public static int save(File dir, ProjectsManager manager) throws IOException {
+        Path root = dir.toPath();
+        Files.createDirectories(root);
+
+        int written = 0;
+        Set<Path> live = new HashSet<>();
+        for (Project p : manager.getProjects()) {
+            Path shard = shardPath(root, p.getId());
+            live.add(shard);
+            if (p.isDirty() || !Files.exists(shard)) {
+                ProjectsFileIO.writeAtomically(shard, out -> ProjectsCodec.write(out, List.of(p)));
+                p.markClean();
+                written++;
+            }
+        }
+
+        for (Path shard : listShards(root)) {
+            if (!live.contains(shard)) {
+                Files.delete(shard);
+            }
+        }
+
+        ProjectsFileIO.writeAtomically(root.resolve(MANIFEST_NAME), out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MANIFEST_MAGIC);
+            data.writeShort(MANIFEST_VERSION);
+            data.writeInt(manager.getNextProjectId());
+            data.flush();
+        });
+        return written;
+    }
+
+    private static List<Project> readShard(Path shard) {
+        try (InputStream in = Files.newInputStream(shard)) {
+            List<Project> projects = ProjectsCodec.read(in);
+            for (Project p : projects) {
+                p.getTasks(); // decode now, on this worker thread
+            }
+            return projects;
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("Kunde inte läsa " + shard, e));
+        }
+    }
+
+    private static int readManifest(Path root) throws IOException {
+        Path manifest = root.resolve(MANIFEST_NAME);
+        if (!Files.exists(manifest)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(manifest))) {
+            if (in.readInt() != MANIFEST_MAGIC || in.readShort() != MANIFEST_VERSION) {
+                throw new IOException("Ogiltigt manifest: " + manifest);
+            }
+            return in.readInt();
+        }
+    }
+
+    private static List<Path> listShards(Path root) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return shards;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, SHARD_PREFIX + "*" + SHARD_SUFFIX)) {
+            for (Path shard : stream) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    private static Path shardPath(Path root, int id) {
+        return root.resolve(SHARD_PREFIX + id + SHARD_SUFFIX);
+    }
+}
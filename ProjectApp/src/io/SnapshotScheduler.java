@@ -0,0 +1,319 @@
+package io;
+
+import Model.IProjectsListener;
+import Model.Project;
+import Model.ProjectsManager;
+import Model.Task;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checkpoints a {@link ProjectsManager} to a snapshot file in the background.
+ * <p>
+ * Registered as a listener on the manager, the scheduler notices every change.
+ * A timer checks every {@code intervalMillis} whether anything changed since the
+ * last checkpoint, also when no further change follows, and if so a single
+ * background thread encodes the projects into memory, each one under its own
+ * lock, so that a thread modifying one project never waits for the others to be
+ * encoded. The encoded copy is then written by the same thread: to a temporary
+ * file, forced to disk and atomically renamed over the snapshot, so the thread
+ * running the user interface never encodes or waits for the disk.
+ * </p>
+ * <p>
+ * If a journal is given, its records up to the start of a checkpoint are
+ * discarded once the snapshot is in place, so the journal does not grow for
+ * the whole session and a restart only replays the changes the snapshot may
+ * be missing.
+ * </p>
+ * <p>
+ * The previous {@code generations} snapshots are kept as {@code <file>.1},
+ * {@code <file>.2} and so on, newest first; {@link #loadLatest} falls back
+ * to them if the newest snapshot cannot be read, and tells which one it read:
+ * the journal must not be replayed on top of an older generation.
+ * </p>
+ */
+public class SnapshotScheduler implements IProjectsListener, Closeable {
+
+    private final Path file;
+    private final ProjectsManager manager;
+    private final ProjectsJournal journal;
+    private final int generations;
+    private final CompressedSnapshot.Level compression;
+    private final ScheduledExecutorService writer;
+    private volatile IOException lastError;
+    private volatile boolean changed;
+
+    private SnapshotScheduler(File file, ProjectsManager manager, ProjectsJournal journal, int generations,
+                              CompressedSnapshot.Level compression) {
+        this.file = file.toPath().toAbsolutePath();
+        this.manager = manager;
+        this.journal = journal;
+        this.generations = generations;
+        this.compression = compression;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.changed = false;
+    }
+
+    /**
+     * Creates a scheduler, registers it as listener on the manager and starts its timer.
+     *
+     * @param file           the snapshot file
+     * @param manager        the manager to checkpoint
+     * @param journal        the journal to discard checkpointed records from, or {@code null}
+     * @param intervalMillis the time between two checks for changes, greater than 0
+     * @param generations    the number of older snapshots to keep
+     * @return the started scheduler
+     */
+    public static SnapshotScheduler start(File file, ProjectsManager manager, ProjectsJournal journal,
+                                          long intervalMillis, int generations) {
+        return start(file, manager, journal, intervalMillis, generations, null);
+    }
+
+    /**
+     * Creates a scheduler that writes the snapshots in the block-compressed
+     * {@link CompressedSnapshot} format, registers it as listener on the manager
+     * and starts its timer.
+     *
+     * @param file           the snapshot file
+     * @param manager        the manager to checkpoint
+     * @param journal        the journal to discard checkpointed records from, or {@code null}
+     * @param intervalMillis the time between two checks for changes, greater than 0
+     * @param generations    the number of older snapshots to keep
+     * @param compression    the compression level, or {@code null} to write the {@link ProjectsCodec} format
+     * @return the started scheduler
+     */
+    public static SnapshotScheduler start(File file, ProjectsManager manager, ProjectsJournal journal,
+                                          long intervalMillis, int generations,
+                                          CompressedSnapshot.Level compression) {
+        if (generations < 0) {
+            throw new IllegalArgumentException("generations must not be negative");
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be greater than 0");
+        }
+        SnapshotScheduler scheduler = new SnapshotScheduler(file, manager, journal, generations, compression);
+        manager.addListener(scheduler);
+        scheduler.writer.scheduleWithFixedDelay(scheduler::checkpointIfChanged,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    @Override
+    public void projectAdded(Project project) {
+        changed = true;
+    }
+
+    @Override
+    public void projectRemoved(Project project) {
+        changed = true;
+    }
+
+    @Override
+    public void taskAdded(Project project, Task task) {
+        changed = true;
+    }
+
+    @Override
+    public void taskRemoved(Project project, Task task) {
+        changed = true;
+    }
+
+    @Override
+    public void taskUpdated(Project project, Task task) {
+        changed = true;
+    }
+
+    /**
+     * Schedules a checkpoint to be captured and written in the background right away.
+     */
+    public void checkpoint() {
+        writer.execute(this::writeCheckpoint);
+    }
+
+    private void checkpointIfChanged() {
+        if (changed) {
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Captures the projects and replaces the snapshot with them, then discards
+     * the journal records the snapshot contains. Runs on the writer thread.
+     */
+    private void writeCheckpoint() {
+        try {
+            // every record before the mark is for a change made before the capture starts
+            long mark = journal != null ? journal.mark() : 0;
+            changed = false;
+            ByteArrayOutputStream snapshot = capture();
+            rotateGenerations();
+            ProjectsFileIO.writeAtomically(file, snapshot::writeTo);
+            if (journal != null) {
+                journal.discardBefore(mark);
+            }
+            lastError = null;
+        } catch (IOException e) {
+            changed = true;
+            lastError = e;
+        }
+    }
+
+    /**
+     * @return the encoded projects, written to the file without copying them again
+     */
+    private ByteArrayOutputStream capture() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            if (compression != null) {
+                CompressedSnapshot.write(bytes, manager.getProjects(), compression);
+            } else {
+                ProjectsCodec.write(bytes, manager.getProjects());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen when writing to memory
+        }
+        return bytes;
+    }
+
+    /**
+     * Shifts {@code file.1 .. file.(n-1)} one step and links the current snapshot as {@code file.1}.
+     */
+    private void rotateGenerations() throws IOException {
+        if (generations == 0 || !Files.exists(file)) {
+            return;
+        }
+        Files.deleteIfExists(generation(file, generations));
+        for (int i = generations - 1; i >= 1; i--) {
+            Path older = generation(file, i);
+            if (Files.exists(older)) {
+                Files.move(older, generation(file, i + 1), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Path newest = generation(file, 1);
+        try {
+            Files.createLink(newest, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, newest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path generation(Path file, int n) {
+        return file.resolveSibling(file.getFileName() + "." + n);
+    }
+
+    /**
+     * @return the error of the most recent failed background write, or {@code null}
+     *         if the most recent write succeeded
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Writes a final checkpoint if anything changed since the last one, waits
+     * for all background writes to finish and unregisters from the manager.
+     *
+     * @throws IOException if the final write failed
+     */
+    @Override
+    public void close() throws IOException {
+        manager.removeListener(this);
+        writer.execute(this::checkpointIfChanged);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+    }
+
+    /**
+     * The projects of a snapshot read by {@link #loadLatest}, and which snapshot they were read from.
+     */
+    public static final class Loaded {
+        private final List<Project> projects;
+        private final File file;
+        private final int generation;
+
+        Loaded(List<Project> projects, File file, int generation) {
+            this.projects = projects;
+            this.file = file;
+            this.generation = generation;
+        }
+
+        public List<Project> getProjects() {
+            return projects;
+        }
+
+        /**
+         * @return the file the projects were read from
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return 0 if the newest snapshot was read, or the number of the older
+         *         generation read because the newer ones could not be
+         */
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * A journal only holds the changes the newest snapshot may be missing, as
+         * the records before it are discarded. Replayed on top of an older
+         * generation, it would skip the changes made in between.
+         *
+         * @return whether the journal can be replayed on top of these projects
+         */
+        public boolean isNewest() {
+            return generation == 0;
+        }
+    }
+
+    /**
+     * Reads the newest snapshot that can be decoded, trying {@code file} first
+     * and then the kept generations in order.
+     *
+     * @param file        the snapshot file
+     * @param generations the number of older snapshots to try
+     * @return the projects of the newest readable snapshot, with the generation they were read from
+     * @throws IOException if no snapshot could be read
+     * @throws ClassNotFoundException if a legacy snapshot refers to an unknown class
+     */
+    public static Loaded loadLatest(File file, int generations)
+            throws IOException, ClassNotFoundException {
+        Path path = file.toPath().toAbsolutePath();
+        IOException failure = null;
+        for (int i = 0; i <= generations; i++) {
+            File candidate = i == 0 ? path.toFile() : generation(path, i).toFile();
+            if (!candidate.exists()) {
+                continue;
+            }
+            try {
+                return new Loaded(ProjectsFileIO.deSerializeFromFile(candidate), candidate, i);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new Loaded(ProjectsFileIO.deSerializeFromFile(file), file, 0);
+    }
+}
@@ -0,0 +1,335 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Text formats for bulk import and export of projects and tasks.
+ * <p>
+ * Every record has the same fields, in the order of the {@code FIELD_} constants.
+ * A project record has {@link #PROJECT} as type, the project title and its
+ * description; a task record has {@link #TASK} as type, the title of its project
+ * and the task fields. Missing values are {@code null}.
+ * </p>
+ */
+public enum TransferFormat {
+
+    /**
+     * Comma separated values as in RFC 4180, with a header row. An empty
+     * unquoted field is {@code null}, a quoted empty field is an empty string.
+     */
+    CSV {
+        @Override
+        void writeHeader(Writer out) throws IOException {
+            out.write(String.join(",", FIELD_NAMES));
+            out.write('\n');
+        }
+
+        @Override
+        void write(Writer out, String[] record) throws IOException {
+            for (int i = 0; i < record.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                String value = record[i];
+                if (value == null) {
+                    continue;
+                }
+                if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                        || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                    out.write('"');
+                    out.write(value.replace("\"", "\"\""));
+                    out.write('"');
+                } else {
+                    out.write(value);
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        void skipHeader(BufferedReader in) throws IOException {
+            in.readLine();
+        }
+
+        @Override
+        String[] read(BufferedReader in, String[] record) throws IOException {
+            int c = in.read();
+            while (c == '\n' || c == '\r') {
+                c = in.read();
+            }
+            if (c < 0) {
+                return null;
+            }
+            StringBuilder field = new StringBuilder();
+            int index = 0;
+            while (true) {
+                boolean quoted = false;
+                field.setLength(0);
+                if (c == '"') {
+                    quoted = true;
+                    while (true) {
+                        c = in.read();
+                        if (c < 0) {
+                            throw new IOException("Oavslutat citattecken i CSV.");
+                        }
+                        if (c == '"') {
+                            c = in.read();
+                            if (c != '"') {
+                                break;
+                            }
+                        }
+                        field.append((char) c);
+                    }
+                } else {
+                    while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                        field.append((char) c);
+                        c = in.read();
+                    }
+                }
+                if (index < record.length) {
+                    record[index] = quoted || field.length() > 0 ? field.toString() : null;
+                }
+                index++;
+                if (c != ',') {
+                    break;
+                }
+                c = in.read();
+            }
+            for (int i = index; i < record.length; i++) {
+                record[i] = null;
+            }
+            return record;
+        }
+    },
+
+    /**
+     * One flat JSON object per line, with the field names as keys and string or null values.
+     */
+    JSON_LINES {
+        @Override
+        void writeHeader(Writer out) {
+        }
+
+        @Override
+        void write(Writer out, String[] record) throws IOException {
+            out.write('{');
+            for (int i = 0; i < record.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write('"');
+                out.write(FIELD_NAMES[i]);
+                out.write("\":");
+                writeJsonString(out, record[i]);
+            }
+            out.write("}\n");
+        }
+
+        @Override
+        void skipHeader(BufferedReader in) {
+        }
+
+        @Override
+        String[] read(BufferedReader in, String[] record) throws IOException {
+            String line = in.readLine();
+            while (line != null && line.isBlank()) {
+                line = in.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            for (int i = 0; i < record.length; i++) {
+                record[i] = null;
+            }
+            new JsonLine(line).readObject(record);
+            return record;
+        }
+    };
+
+    /** Index of the record type, {@link #PROJECT} or {@link #TASK}. */
+    public static final int FIELD_TYPE = 0;
+    /** Index of the project title. */
+    public static final int FIELD_PROJECT = 1;
+    /** Index of the project or task description. */
+    public static final int FIELD_DESCRIPTION = 2;
+    /** Index of the task priority, a {@link Model.TaskPrio} name. */
+    public static final int FIELD_PRIO = 3;
+    /** Index of the task state, a {@link Model.TaskState} name. */
+    public static final int FIELD_STATE = 4;
+    /** Index of the assignee of the task. */
+    public static final int FIELD_TAKEN_BY = 5;
+    /** Index of the last update of the task, in ISO-8601 format. */
+    public static final int FIELD_LAST_UPDATED = 6;
+    /** The number of fields in a record. */
+    public static final int FIELD_COUNT = 7;
+
+    /** Type of a project record. */
+    public static final String PROJECT = "project";
+    /** Type of a task record. */
+    public static final String TASK = "task";
+
+    private static final String[] FIELD_NAMES = {
+            "type", "project", "description", "prio", "state", "takenBy", "lastUpdated"
+    };
+
+    abstract void writeHeader(Writer out) throws IOException;
+
+    abstract void write(Writer out, String[] record) throws IOException;
+
+    abstract void skipHeader(BufferedReader in) throws IOException;
+
+    /**
+     * Reads the next record into {@code record}.
+     *
+     * @return {@code record}, or {@code null} at the end of the input
+     */
+    abstract String[] read(BufferedReader in, String[] record) throws IOException;
+
+    /**
+     * Picks the format from a file name: {@code .jsonl} and {@code .json} mean JSON Lines, anything else CSV.
+     *
+     * @param fileName the name of the file
+     * @return the matching format
+     */
+    public static TransferFormat forFileName(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".jsonl") || name.endsWith(".json") ? JSON_LINES : CSV;
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Parser for one flat JSON object whose values are strings or {@code null}.
+     */
+    private static class JsonLine {
+        private final String line;
+        private int pos;
+
+        JsonLine(String line) {
+            this.line = line;
+            this.pos = 0;
+        }
+
+        void readObject(String[] record) throws IOException {
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                return;
+            }
+            do {
+                skipSpace();
+                String key = readString();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                String value;
+                if (line.startsWith("null", pos)) {
+                    pos += 4;
+                    value = null;
+                } else {
+                    value = readString();
+                }
+                for (int i = 0; i < FIELD_NAMES.length; i++) {
+                    if (FIELD_NAMES[i].equals(key)) {
+                        record[i] = value;
+                    }
+                }
+                skipSpace();
+            } while (tryConsume(','));
+            expect('}');
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                c = next();
+                switch (c) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > line.length()) {
+                            throw error();
+                        }
+                        sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(c);
+                }
+            }
+        }
+
+        private void skipSpace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() throws IOException {
+            if (pos >= line.length()) {
+                throw error();
+            }
+            return line.charAt(pos);
+        }
+
+        private char next() throws IOException {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private boolean tryConsume(char c) throws IOException {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (next() != c) {
+                throw error();
+            }
+        }
+
+        private IOException error() {
+            return new IOException("Ogiltig JSON-rad vid position " + pos + ": " + line);
+        }
+    }
+}
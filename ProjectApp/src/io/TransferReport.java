@@ -0,0 +1,51 @@
+package io;
+
+/**
+ * Result of a bulk import or export: how many records were transferred and how fast.
+ */
+public class TransferReport {
+
+    private final long projects;
+    private final long tasks;
+    private final long nanos;
+
+    TransferReport(long projects, long tasks, long nanos) {
+        this.projects = projects;
+        this.tasks = tasks;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the number of project records transferred
+     */
+    public long getProjects() {
+        return projects;
+    }
+
+    /**
+     * @return the number of task records transferred
+     */
+    public long getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return the elapsed time in milliseconds
+     */
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * @return the number of project and task records transferred per second
+     */
+    public double getRecordsPerSecond() {
+        return nanos == 0 ? 0 : (projects + tasks) * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d projects, %d tasks in %d ms (%.0f records/s)",
+                projects, tasks, getMillis(), getRecordsPerSecond());
+    }
+}
@@ -0,0 +1,199 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures a running {@link ProjectsServer} from many concurrent connections.
+ * <p>
+ * One connection first creates a project with some tasks. Then every connection,
+ * each on its own virtual thread, sends a mix of claims, state changes, task
+ * queries and project searches on that project, keeping up to {@code depth}
+ * requests in flight. The latency of a request is the time from writing it to
+ * reading the end of its response. The median, 99th percentile and throughput
+ * over all requests are printed at the end.
+ * </p>
+ * <pre>
+ * java server.LoadGenerator [port [connections [requests [depth [host]]]]]
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final int TASKS = 100;
+
+    private final String host;
+    private final int port;
+
+    private LoadGenerator(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : ProjectsServer.DEFAULT_PORT;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        String host = args.length > 4 ? args[4] : "localhost";
+        new LoadGenerator(host, port).run(connections, requests, depth);
+    }
+
+    private void run(int connections, int requests, int depth) throws Exception {
+        String title = "load-" + System.nanoTime();
+        int projectId;
+        int[] taskIds = new int[TASKS];
+        try (Connection setup = new Connection()) {
+            projectId = Integer.parseInt(setup.call("ADD\t" + title + "\tcreated by the load generator").get(0));
+            for (int i = 0; i < TASKS; i++) {
+                String prio = i % 3 == 0 ? "HIGH" : "MEDIUM";
+                taskIds[i] = Integer.parseInt(setup.call("ADDTASK\t" + projectId + "\t" + prio + "\ttask " + i).get(0));
+            }
+        }
+
+        List<Future<long[]>> results = new ArrayList<>(connections);
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < connections; c++) {
+                int client = c;
+                results.add(clients.submit(() -> load(client, projectId, taskIds, title, requests, depth)));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = new long[connections * requests];
+        int n = 0;
+        for (Future<long[]> result : results) {
+            long[] connectionLatencies = result.get();
+            System.arraycopy(connectionLatencies, 0, latencies, n, connectionLatencies.length);
+            n += connectionLatencies.length;
+        }
+        Arrays.sort(latencies, 0, n);
+        System.out.printf("%d connections, %d requests, pipeline depth %d%n", connections, n, depth);
+        System.out.printf("p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                percentile(latencies, n, 50) / 1e6, percentile(latencies, n, 99) / 1e6, latencies[n - 1] / 1e6);
+        System.out.printf("throughput %.0f requests/s%n", n * 1e9 / elapsed);
+    }
+
+    /**
+     * Sends the requests of one connection, keeping up to {@code depth} of them unanswered.
+     *
+     * @return the latency of every request in nanoseconds
+     */
+    private long[] load(int client, int projectId, int[] taskIds, String title, int requests, int depth) throws IOException {
+        Random random = new Random(client);
+        long[] sent = new long[requests];
+        long[] latencies = new long[requests];
+        try (Connection connection = new Connection()) {
+            int next = 0;
+            for (int done = 0; done < requests; done++) {
+                while (next < requests && next - done < depth) {
+                    connection.send(request(random, next, client, projectId, taskIds, title));
+                    sent[next++] = System.nanoTime();
+                }
+                connection.flush();
+                connection.receive();
+                latencies[done] = System.nanoTime() - sent[done];
+            }
+        }
+        return latencies;
+    }
+
+    private static String request(Random random, int i, int client, int projectId, int[] taskIds, String title) {
+        int task = taskIds[random.nextInt(taskIds.length)];
+        switch (i % 10) {
+            case 0:
+                return "CLAIM\t" + projectId + "\t" + task + "\tuser" + client;
+            case 1:
+                return "DONE\t" + projectId + "\t" + task;
+            case 2:
+            case 3:
+            case 4:
+            case 5:
+                return "TASKS\t" + projectId + "\tHIGH";
+            default:
+                return "FIND\t" + title;
+        }
+    }
+
+    private static long percentile(long[] sorted, int n, int percent) {
+        return sorted[Math.min(n - 1, (int) ((long) n * percent / 100))];
+    }
+
+    /**
+     * A client connection that writes requests and reads complete responses.
+     */
+    private final class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        Connection() throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void send(String request) throws IOException {
+            out.write(request);
+            out.write('\n');
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * @return the data lines of the next response, or {@code null} if it is an error
+         */
+        List<String> receive() throws IOException {
+            String status = in.readLine();
+            if (status == null) {
+                throw new IOException("Connection closed by server");
+            }
+            if (!status.startsWith("OK ")) {
+                return null;
+            }
+            int count = Integer.parseInt(status.substring(3));
+            List<String> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lines.add(in.readLine());
+            }
+            return lines;
+        }
+
+        /**
+         * Sends one request and waits for its response.
+         *
+         * @throws IOException if the server answers with an error
+         */
+        List<String> call(String request) throws IOException {
+            send(request);
+            flush();
+            List<String> lines = receive();
+            if (lines == null) {
+                throw new IOException("Request failed: " + request);
+            }
+            return lines;
+        }
+
+        @Override
+        public void close() throws IOException {
+            send("QUIT");
+            flush();
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package server;
+
+import Model.ProjectsManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lets several clients share one {@link ProjectsManager} over local connections.
+ * <p>
+ * The server listens on the loopback address only and speaks the line protocol
+ * of {@link ServerProtocol}. Every connection is served by its own virtual
+ * thread, so thousands of mostly idle connections cost little more than their
+ * sockets, and a connection waiting for the lock of a project does not hold up
+ * the others.
+ * </p>
+ * <p>
+ * Requests may be pipelined: a client can send many requests without waiting
+ * for the responses, which come back in the order of the requests. Responses
+ * are buffered and only flushed when no further request has arrived, so a
+ * pipelined batch is answered with few writes.
+ * </p>
+ */
+public class ProjectsServer implements Closeable {
+
+    /** The port the server listens on when none is given. */
+    public static final int DEFAULT_PORT = 7878;
+
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ServerSocket serverSocket;
+    private final ServerProtocol protocol;
+    private final ExecutorService connections;
+    private final Set<Socket> openSockets;
+    private final Thread acceptor;
+
+    /**
+     * Starts a server that accepts connections in the background.
+     *
+     * @param manager the manager to share
+     * @param port    the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public ProjectsServer(ProjectsManager manager, int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.protocol = new ServerProtocol(manager);
+        this.connections = Executors.newVirtualThreadPerTaskExecutor();
+        this.openSockets = ConcurrentHashMap.newKeySet();
+        this.acceptor = Thread.ofVirtual().name("projects-server").start(this::acceptConnections);
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                openSockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // thrown by accept once the server socket is closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+             BufferedWriter out = new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            socket.setTcpNoDelay(true);
+            String request;
+            while ((request = in.readLine()) != null && !request.equals("QUIT")) {
+                protocol.handle(request, out);
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // the client went away or the server is closing; nothing to clean up
+        } finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and waits until their
+     * threads have finished.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : openSockets) {
+            socket.close();
+        }
+        connections.close();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
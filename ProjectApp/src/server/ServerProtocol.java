@@ -0,0 +1,221 @@
+package server;
+
+import Model.ITaskMatcher;
+import Model.NotDoneMatcher;
+import Model.PrioMatcher;
+import Model.Project;
+import Model.ProjectsManager;
+import Model.TakenByMatcher;
+import Model.Task;
+import Model.TaskPrio;
+import Model.TaskState;
+import Model.TitleNotUniqueException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The line protocol of {@link ProjectsServer}, offering the operations of the
+ * text menus over a connection.
+ * <p>
+ * A request is one line: a command followed by its arguments, separated by tabs.
+ * A response starts with {@code OK <n>}, followed by {@code n} lines of data, or
+ * is the single line {@code ERR <message>}. Projects are written as
+ * {@code id, title, description} and tasks as
+ * {@code id, prio, state, takenBy, description}, also separated by tabs.
+ * </p>
+ * <pre>
+ * PING                                  OK 0
+ * LIST                                  all projects
+ * FIND     title                        the project with exactly that title, if any
+ * ADD      title  description           OK 1, the ID of the new project
+ * REMOVE   projectId
+ * TASKS    projectId  [NOTDONE | HIGH | TAKENBY name]
+ * ADDTASK  projectId  LOW|MEDIUM|HIGH  description   OK 1, the ID of the new task
+ * CLAIM    projectId  taskId  name      takes the task and sets it to TO_DO in one step
+ * DONE     projectId  taskId
+ * REMOVETASK projectId  taskId
+ * REPORT   NOTDONE | HIGH | TAKENBY name   tasks of all projects, as projectId then the task
+ * QUIT                                  closes the connection
+ * </pre>
+ */
+final class ServerProtocol {
+
+    private final ProjectsManager manager;
+
+    ServerProtocol(ProjectsManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Executes one request and writes its response, without flushing.
+     *
+     * @param request the request line
+     * @param out     the writer for the response
+     * @throws IOException if the response cannot be written
+     */
+    void handle(String request, Writer out) throws IOException {
+        String[] args = request.split("\t", -1);
+        List<String> lines = new ArrayList<>();
+        String error;
+        try {
+            error = execute(args, lines);
+        } catch (NumberFormatException e) {
+            error = "not a number: " + e.getMessage();
+        } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        if (error != null) {
+            out.write("ERR " + clean(error) + "\n");
+            return;
+        }
+        out.write("OK " + lines.size() + "\n");
+        for (String line : lines) {
+            out.write(line);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * @return an error message, or {@code null} if the request succeeded and its data was added to {@code lines}
+     */
+    private String execute(String[] args, List<String> lines) {
+        switch (args[0]) {
+            case "PING":
+                return null;
+            case "LIST":
+                for (Project project : manager.getProjects()) {
+                    lines.add(format(project));
+                }
+                return null;
+            case "FIND":
+                for (Project project : manager.findProjects(args[1])) {
+                    lines.add(format(project));
+                }
+                return null;
+            case "ADD":
+                try {
+                    lines.add(String.valueOf(manager.addProject(args[1], args.length > 2 ? args[2] : "").getId()));
+                    return null;
+                } catch (TitleNotUniqueException e) {
+                    return "A project with that title already exists.";
+                }
+            case "REMOVE": {
+                Project project = project(args[1]);
+                if (project == null) {
+                    return "Project not found";
+                }
+                manager.removeProject(project);
+                return null;
+            }
+            case "TASKS": {
+                Project project = project(args[1]);
+                if (project == null) {
+                    return "Project not found";
+                }
+                List<Task> tasks = args.length > 2 ? project.findTasks(matcher(args, 2)) : project.getTasks();
+                for (Task task : tasks) {
+                    lines.add(format(task));
+                }
+                return null;
+            }
+            case "ADDTASK": {
+                Project project = project(args[1]);
+                if (project == null) {
+                    return "Project not found";
+                }
+                lines.add(String.valueOf(project.addTask(args[3], TaskPrio.valueOf(args[2])).getId()));
+                return null;
+            }
+            case "CLAIM": {
+                Task task = task(args[1], args[2]);
+                if (task == null) {
+                    return "Id not found.";
+                }
+                // claim and change the state together, so no other request sees the task half claimed
+                while (true) {
+                    long version = task.getVersion();
+                    String takenBy = task.getTakenBy();
+                    if (takenBy != null) {
+                        return "Task already taken by " + takenBy + ".";
+                    }
+                    if (task.compareAndSet(version, t -> {
+                        t.setTakenBy(args[3]);
+                        t.setState(TaskState.TO_DO);
+                    })) {
+                        return null;
+                    }
+                }
+            }
+            case "DONE": {
+                Task task = task(args[1], args[2]);
+                if (task == null) {
+                    return "Id not found.";
+                }
+                task.setState(TaskState.DONE);
+                return null;
+            }
+            case "REMOVETASK": {
+                Project project = project(args[1]);
+                Task task = project == null ? null : project.getTaskById(Integer.parseInt(args[2]));
+                if (task == null || !project.removeTask(task)) {
+                    return "Id not found.";
+                }
+                return null;
+            }
+            case "REPORT":
+                for (Task task : manager.findTasks(matcher(args, 1))) {
+                    Project project = task.getProject();
+                    if (project != null) {
+                        lines.add(project.getId() + "\t" + format(task));
+                    }
+                }
+                return null;
+            default:
+                return "Unknown command";
+        }
+    }
+
+    private Project project(String id) {
+        return manager.getProjectById(Integer.parseInt(id));
+    }
+
+    private Task task(String projectId, String taskId) {
+        Project project = project(projectId);
+        return project == null ? null : project.getTaskById(Integer.parseInt(taskId));
+    }
+
+    private static ITaskMatcher matcher(String[] args, int at) {
+        switch (args[at]) {
+            case "NOTDONE":
+                return new NotDoneMatcher();
+            case "HIGH":
+                return new PrioMatcher(TaskPrio.HIGH);
+            case "TAKENBY":
+                return new TakenByMatcher(args[at + 1]);
+            default:
+                throw new IllegalArgumentException("Unknown matcher " + args[at]);
+        }
+    }
+
+    private static String format(Project project) {
+        return project.getId() + "\t" + clean(project.getTitle()) + "\t" + clean(project.getDescription());
+    }
+
+    private static String format(Task task) {
+        return task.getId() + "\t" + task.getPrio() + "\t" + task.getState() + "\t"
+                + clean(task.getTakenBy()) + "\t" + clean(task.getDescription());
+    }
+
+    /**
+     * @return the text with tabs and line breaks replaced by spaces, so that it fits in one field
+     */
+    private static String clean(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -99,8 +99,11 @@ class CurrentProjectUI {
             if (stateChar == 'T') {
                 System.out.print("Taken by (name or email address)? ");
                 String emailStr = scan.nextLine();
-                task.setState(TaskState.TO_DO);
-                task.setTakenBy(emailStr);
+                if (task.tryClaim(emailStr)) {
+                    task.setState(TaskState.TO_DO);
+                } else {
+                    System.out.println("Task already taken by " + task.getTakenBy() + ".");
+                }
             }
             else if(stateChar == ('D')) {
                 task.setState(TaskState.DONE);
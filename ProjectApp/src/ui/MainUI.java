@@ -1,7 +1,12 @@
 package ui;
 
+import Model.ITaskMatcher;
+import Model.NotDoneMatcher;
+import Model.PrioMatcher;
 import Model.Project;
 import Model.ProjectsManager;
+import Model.Task;
+import Model.TaskPrio;
 
 import java.util.List;
 import java.util.Scanner;
@@ -46,6 +51,12 @@ public class MainUI {
                 case 'L':
                     listOfProjects();
                     break;
+                case 'N':
+                    listTasks(new NotDoneMatcher());
+                    break;
+                case 'H':
+                    listTasks(new PrioMatcher(TaskPrio.HIGH));
+                    break;
                 case 'X':
                     break;
                 default:
@@ -109,8 +120,9 @@ public class MainUI {
     }
 
     private void listOfProjects(){
-        if(!manager.getProjects().isEmpty()){
-            for(Project p : manager.getProjects()){
+        List<Project> projects = manager.getProjects();
+        if(!projects.isEmpty()){
+            for(Project p : projects){
                 System.out.println(p.getTitle() + ": " + p.getDescription());
             }
         }
@@ -119,6 +131,17 @@ public class MainUI {
         }
     }
 
+    private void listTasks(ITaskMatcher matcher) {
+        List<Task> tasks = manager.findTasks(matcher);
+        if (tasks.isEmpty()) {
+            System.out.println("No matching tasks.");
+        } else {
+            for (Task task : tasks) {
+                System.out.println(task.getProject().getTitle() + ": " + task.getDescription() + ": " + task.getPrio() + ",  last updated: " + task.getLastUpdated());
+            }
+        }
+    }
+
     private void printMainMenu() {
         System.out.println("---Main menu---");
         System.out.println("F - find project");
@@ -126,6 +149,8 @@ public class MainUI {
         System.out.println("M - manage project");
         System.out.println("R - Remove project");
         System.out.println("L - List of projects");
+        System.out.println("N - list tasks not done in all projects");
+        System.out.println("H - list high priority tasks in all projects");
         System.out.println("X - exit");
         System.out.println("----------");
     }